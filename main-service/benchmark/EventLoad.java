@@ -0,0 +1,80 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ Генератор нагрузки: clients клиентов в цикле запрашивают url в течение seconds секунд после прогрева.
+ Печатает количество успешных ответов и ошибок, запросы в секунду и перцентили времени ответа.
+ Запуск без сборки (JDK 21): java EventLoad.java http://localhost:8080/events/1 500 30 10
+ */
+public class EventLoad {
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        int clients = Integer.parseInt(args[1]);
+        int seconds = Integer.parseInt(args[2]);
+        int warmupSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+
+        run(client, request, clients, warmupSeconds, new AtomicLong(), new AtomicLong(), new ConcurrentLinkedQueue<>());
+
+        AtomicLong ok = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        Queue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        run(client, request, clients, seconds, ok, errors, latencies);
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("clients=%d seconds=%d ok=%d errors=%d rps=%.0f p50=%.1fms p99=%.1fms%n",
+                clients, seconds, ok.get(), errors.get(), ok.get() / (double) seconds,
+                percentile(all, 0.5), percentile(all, 0.99));
+    }
+
+    private static void run(HttpClient client, HttpRequest request, int clients, int seconds,
+                            AtomicLong ok, AtomicLong errors, Queue<long[]> latencies) {
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.submit(() -> {
+                    long[] own = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < end) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            (response.statusCode() == 200 ? ok : errors).incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == own.length) {
+                            own = Arrays.copyOf(own, count * 2);
+                        }
+                        own[count++] = System.nanoTime() - start;
+                    }
+                    latencies.add(Arrays.copyOf(own, count));
+                    return null;
+                });
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))] / 1e6;
+    }
+}
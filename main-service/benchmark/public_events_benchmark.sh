@@ -0,0 +1,24 @@
+#!/usr/bin/env bash
+# Время ответа публичного списка событий: медиана и разброс по RUNS запросам для каждой страницы.
+# Сервисы статистики и main-service должны быть запущены, данные загружены public_events_data.sql.
+#   ./public_events_benchmark.sh [base-url] [runs]
+set -euo pipefail
+
+BASE_URL=${1:-http://localhost:8080}
+RUNS=${2:-6}
+
+# Первый запрос прогревает соединения и JIT и в замер не входит
+curl -s -o /dev/null "$BASE_URL/events?size=1000"
+
+for query in "size=1000" "size=1000&from=5000" "size=1000&sort=EVENT_DATE" "size=200&text=bulk"; do
+    times=()
+    for _ in $(seq "$RUNS"); do
+        times+=("$(curl -s -o /dev/null -w '%{time_total}' "$BASE_URL/events?$query")")
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v q="$query" '
+        { t[NR] = $1 }
+        END {
+            median = NR % 2 ? t[(NR + 1) / 2] : (t[NR / 2] + t[NR / 2 + 1]) / 2
+            printf "%-28s median=%.3fs min=%.3fs max=%.3fs\n", q, median, t[1], t[NR]
+        }'
+done
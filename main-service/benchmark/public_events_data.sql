@@ -0,0 +1,30 @@
+-- Опубликованные события для замера публичного списка GET /events.
+-- 12 000 событий с описанием около 6300 символов: столько читает каждая строка, если список
+-- загружается сущностями Event, а не проекцией. Скрипт выполняется после запуска main-service,
+-- потому что при старте schema.sql пересоздает таблицы:
+--   psql -h localhost -p 6541 -U ewm -d ewm -f public_events_data.sql
+
+INSERT INTO users (name, email)
+SELECT 'bench ' || g, 'bench' || g || '@example.com'
+FROM generate_series(1, 4) g
+ON CONFLICT DO NOTHING;
+
+INSERT INTO categories (name)
+SELECT 'bench ' || g
+FROM generate_series(1, 4) g
+ON CONFLICT DO NOTHING;
+
+INSERT INTO events (annotation, category_id, confirmed_requests, created_on, description, event_date,
+                    initiator_id, lat, lon, paid, participant_limit, published_on, request_moderation, state, title)
+SELECT 'bulk annotation ' || g,
+       (SELECT id FROM categories WHERE name = 'bench ' || (g % 4 + 1)),
+       0,
+       now(),
+       repeat('описание ', 700),
+       now() + interval '30 days' + g * interval '1 minute',
+       (SELECT id FROM users WHERE email = 'bench' || (g % 4 + 1) || '@example.com'),
+       0, 0, false, 0, now(), true, 'PUBLISHED',
+       'bulk ' || g
+FROM generate_series(1, 12000) g;
+
+ANALYZE events;
@@ -0,0 +1,25 @@
+#!/usr/bin/env bash
+# Время ответа GET /events?sort=VIEWS: первый запрос после запуска сервисов и медиана по RUNS повторным.
+# Сервисы статистики и main-service должны быть только что запущены, данные загружены
+# public_events_data.sql (main-service) и public_events_views_data.sql (сервис статистики).
+#   ./public_events_views_benchmark.sh [base-url] [runs]
+set -euo pipefail
+
+BASE_URL=${1:-http://localhost:8080}
+RUNS=${2:-6}
+
+# 12 000 кандидатов ранжируются по просмотрам; categories=1 оставляет 3000 кандидатов
+for query in "sort=VIEWS&size=10" "sort=VIEWS&size=10&from=1000" "sort=VIEWS&size=10&text=bulk" \
+        "sort=VIEWS&size=10&categories=1"; do
+    first=$(curl -s -o /dev/null -w '%{time_total}' "$BASE_URL/events?$query")
+    times=()
+    for _ in $(seq "$RUNS"); do
+        times+=("$(curl -s -o /dev/null -w '%{time_total}' "$BASE_URL/events?$query")")
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v q="$query" -v first="$first" '
+        { t[NR] = $1 }
+        END {
+            median = NR % 2 ? t[(NR + 1) / 2] : (t[NR / 2] + t[NR / 2 + 1]) / 2
+            printf "%-34s first=%.3fs median=%.3fs min=%.3fs max=%.3fs\n", q, first, median, t[1], t[NR]
+        }'
+done
@@ -0,0 +1,31 @@
+-- Просмотры событий для замера сортировки по просмотрам GET /events?sort=VIEWS.
+-- Выполняется на базе сервиса статистики после запуска stats-server; события — из public_events_data.sql
+-- (12 000 опубликованных событий с идентификаторами 1..12000 на пустой базе main-service):
+--   psql -h localhost -p 9091 -U stats -d stats -f public_events_views_data.sql
+-- 200 000 хитов за последние 300 дней по событиям 1..3000 с 60 000 разных IP; распределение неравномерное
+-- (у событий с меньшими идентификаторами больше хитов), поэтому уникальные просмотры у событий различаются
+
+\timing on
+
+-- Месячные секции на весь диапазон данных, чтобы хиты не попадали в секцию по умолчанию
+DO $$
+DECLARE
+    month DATE;
+BEGIN
+    FOR month IN SELECT generate_series(date_trunc('month', now() - interval '12 months'),
+                                        date_trunc('month', now()), interval '1 month')::date LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF endpoint_hits FOR VALUES FROM (%L) TO (%L)',
+                       'endpoint_hits_p' || to_char(month, 'YYYY_MM'), month, (month + interval '1 month')::date);
+    END LOOP;
+END $$;
+
+SELECT setseed(0.42);
+
+INSERT INTO endpoint_hits (app, uri, ip, timestamp)
+SELECT 'ewm-main-service',
+       '/events/' || (1 + (random() * random() * 2999)::int),
+       '10.1.' || (g % 60000 / 250) || '.' || (g % 250),
+       now()::timestamp - random() * interval '300 days'
+FROM generate_series(1, 200000) g;
+
+VACUUM ANALYZE endpoint_hits;
@@ -0,0 +1,51 @@
+#!/usr/bin/env bash
+# Сравнение обработки запросов на платформенных и виртуальных потоках (spring.threads.virtual.enabled).
+# Для каждого режима перезапускает stats-server и main-service из собранных jar и нагружает
+# GET /events/{id} генератором EventLoad.java. База ewm должна содержать опубликованное событие
+# (public_events_data.sql), база stats — схему stats-server; схемы при запуске не пересоздаются.
+# Адрес базы статистики можно переопределить переменной STATS_DATASOURCE_URL, дополнительные
+# параметры main-service — переменной EWM_ARGS (например, --requests.max-concurrent=100).
+#   ./virtual_threads_benchmark.sh [event-id] [clients] [seconds]
+set -euo pipefail
+
+EVENT_ID=${1:-1}
+CLIENTS=${2:-2000}
+SECONDS_PER_RUN=${3:-30}
+ROOT=$(cd "$(dirname "$0")/../.." && pwd)
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+LOGS=${LOGS:-/tmp}
+
+wait_for() {
+    for _ in $(seq 90); do
+        curl -s -o /dev/null "$1" && return 0
+        sleep 2
+    done
+    echo "Не дождались $1" >&2
+    return 1
+}
+
+for virtual in false true; do
+    "$JAVA" -Djdk.tracePinnedThreads=short -jar "$ROOT/stats/stats-server/target/stats-server-0.0.1-SNAPSHOT.jar" \
+        ${STATS_DATASOURCE_URL:+--spring.datasource.url=$STATS_DATASOURCE_URL} \
+        --spring.sql.init.mode=never --spring.threads.virtual.enabled=$virtual --logging.level.root=WARN \
+        > "$LOGS/stats-vt-$virtual.log" 2>&1 &
+    STATS_PID=$!
+    "$JAVA" -Djdk.tracePinnedThreads=short -jar "$ROOT/main-service/target/ewm-service-0.0.1-SNAPSHOT.jar" \
+        --spring.sql.init.mode=never --spring.threads.virtual.enabled=$virtual --spring.jpa.show-sql=false ${EWM_ARGS:-} \
+        --logging.level.root=WARN > "$LOGS/ewm-vt-$virtual.log" 2>&1 &
+    EWM_PID=$!
+    trap 'kill $STATS_PID $EWM_PID 2>/dev/null' EXIT
+
+    wait_for "http://localhost:9090/actuator/health"
+    wait_for "http://localhost:8080/events/$EVENT_ID"
+
+    echo "virtual threads: $virtual"
+    "$JAVA" "$DIR/EventLoad.java" "http://localhost:8080/events/$EVENT_ID" "$CLIENTS" "$SECONDS_PER_RUN"
+    # -Djdk.tracePinnedThreads печатает стек при каждой блокировке виртуального потока на мониторе
+    echo "pinned stacks: $(cat "$LOGS/ewm-vt-$virtual.log" "$LOGS/stats-vt-$virtual.log" | grep -c '<== monitors' || true)"
+
+    kill $STATS_PID $EWM_PID
+    wait $STATS_PID $EWM_PID 2>/dev/null || true
+    trap - EXIT
+done
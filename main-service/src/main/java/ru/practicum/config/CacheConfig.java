@@ -0,0 +1,47 @@
+package ru.practicum.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/*
+ Локальный кэш справочных данных (Caffeine).
+ Имена кэшей и их спецификация задаются в application.properties (spring.cache.*),
+ статистика попаданий/промахов доступна через actuator: /actuator/metrics/cache.gets
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String CATEGORIES = "categories";
+    public static final String CATEGORY_LISTS = "categoryLists";
+    public static final String COMPILATIONS = "compilations";
+    public static final String COMPILATION_PAGES = "compilationPages";
+
+    @Value("${compilations.cache.ttl-seconds:60}")
+    private long compilationsTtlSeconds;
+
+    @Value("${compilations.cache.max-size:1000}")
+    private long compilationsMaxSize;
+
+    // Подборки содержат просмотры событий, поэтому живут в кэше меньше справочников
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> compilationCacheCustomizer() {
+        return cacheManager -> {
+            cacheManager.registerCustomCache(COMPILATIONS, compilationCacheBuilder().build());
+            cacheManager.registerCustomCache(COMPILATION_PAGES, compilationCacheBuilder().build());
+        };
+    }
+
+    private Caffeine<Object, Object> compilationCacheBuilder() {
+        return Caffeine.newBuilder()
+                .maximumSize(compilationsMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(compilationsTtlSeconds))
+                .recordStats();
+    }
+}
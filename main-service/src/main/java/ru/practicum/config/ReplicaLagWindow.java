@@ -0,0 +1,31 @@
+package ru.practicum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+ Окно возможного отставания реплик после записи: совпадает с окном read-your-writes (DataSourceConfig).
+ Кэши, сброшенные после записи, не сохраняют загруженные в это окно значения: чтение другого клиента
+ могло прийти с отстающей реплики и вернуть в кэш старые данные на весь срок жизни записи.
+ Без реплик окно нулевое
+ */
+@Component
+public class ReplicaLagWindow {
+    private final long windowNanos;
+
+    public ReplicaLagWindow(@Value("${datasource.replica.urls:}") String replicaUrls,
+                            @Value("${datasource.replica.read-your-writes-ms:5000}") long readYourWritesMs) {
+        this.windowNanos = replicaUrls.isBlank() ? 0 : Duration.ofMillis(readYourWritesMs).toNanos();
+    }
+
+    // Момент (System.nanoTime), до которого загруженные с реплики данные могут быть устаревшими
+    public long closesAt() {
+        return System.nanoTime() + windowNanos;
+    }
+
+    public boolean isClosed(long closesAt) {
+        return System.nanoTime() - closesAt >= 0;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ Маршрутизация соединений: транзакции только для чтения уходят на реплики (по кругу),
+ остальные — на основную БД.
+ После собственной записи клиент в течение окна read-your-writes читает с основной БД,
+ чтобы не увидеть устаревшие данные из-за отставания реплики. Клиент — пользователь из пути
+ /users/{userId}/..., все запросы /admin/... считаются одним клиентом; IP-адрес не используется:
+ за прокси или NAT одна запись закрепляла бы за основной БД всех клиентов.
+ Решение принимается при получении соединения, поэтому источник оборачивается
+ в LazyConnectionDataSourceProxy: к этому моменту признак readOnly транзакции уже установлен
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA_PREFIX = "replica-";
+    private static final Pattern USER_PATH = Pattern.compile("^/users/(\\d+)(/.*)?$");
+    private static final String ADMIN_PATH = "/admin/";
+
+    private final int replicaCount;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // Клиенты, недавно выполнившие запись; запись удаляется по истечении окна read-your-writes
+    private final Cache<String, Boolean> recentWriters;
+
+    ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA_PREFIX + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.replicaCount = replicas.size();
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String client = currentClient();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWrite(client);
+            return PRIMARY;
+        }
+
+        if (replicaCount == 0 || (client != null && recentWriters.getIfPresent(client) != null)) {
+            return PRIMARY;
+        }
+        return REPLICA_PREFIX + Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+    }
+
+    // Окно read-your-writes отсчитывается от фиксации пишущей транзакции
+    private void rememberWrite(String client) {
+        if (client == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(client, Boolean.TRUE);
+            }
+        });
+    }
+
+    // Клиент текущего HTTP-запроса; для публичных запросов и вне запроса (прогрев кэшей, фоновые задачи) — null
+    private String currentClient() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return null;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Matcher user = USER_PATH.matcher(path);
+        if (user.matches()) {
+            return "user:" + user.group(1);
+        }
+        return path.startsWith(ADMIN_PATH) ? "admin" : null;
+    }
+}
@@ -1,8 +1,17 @@
 package ru.practicum.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.practicum.CircuitBreakerSettings;
+import ru.practicum.CircuitState;
+import ru.practicum.HitOverflowPolicy;
+import ru.practicum.HitQueueSettings;
+import ru.practicum.HttpTransportSettings;
 import ru.practicum.StatsClient;
 
 @Configuration
@@ -11,8 +20,123 @@ public class StatsClientConfig {
     @Value("${stats.server.url}")
     private String statsServerUrl;
 
+    @Value("${stats.client.queue.enabled:true}")
+    private boolean queueEnabled;
+
+    @Value("${stats.client.queue.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${stats.client.queue.batch-size:100}")
+    private int batchSize;
+
+    @Value("${stats.client.queue.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${stats.client.queue.overflow-policy:DROP_OLDEST}")
+    private HitOverflowPolicy overflowPolicy;
+
+    @Value("${stats.client.queue.block-timeout-ms:50}")
+    private long blockTimeoutMs;
+
+    @Value("${stats.client.spool.directory:}")
+    private String spoolDirectory;
+
+    @Value("${stats.client.spool.segment-bytes:4194304}")
+    private int spoolSegmentBytes;
+
+    @Value("${stats.client.spool.max-bytes:268435456}")
+    private long spoolMaxBytes;
+
+    @Value("${stats.client.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${stats.client.http.connect-timeout-ms:1000}")
+    private long connectTimeoutMs;
+
+    @Value("${stats.client.http.read-timeout-ms:3000}")
+    private long readTimeoutMs;
+
+    @Value("${stats.client.http.pool-timeout-ms:500}")
+    private long poolTimeoutMs;
+
+    @Value("${stats.client.http.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${stats.client.http.gzip:true}")
+    private boolean gzip;
+
+    @Value("${stats.client.circuit.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${stats.client.circuit.open-duration-ms:10000}")
+    private long circuitOpenDurationMs;
+
+    @Bean
+    public StatsClient statsClient(ObservationRegistry observationRegistry) {
+        HitQueueSettings settings = null;
+        if (queueEnabled) {
+            settings = HitQueueSettings.builder()
+                    .capacity(queueCapacity)
+                    .batchSize(batchSize)
+                    .flushIntervalMs(flushIntervalMs)
+                    .overflowPolicy(overflowPolicy)
+                    .blockTimeoutMs(blockTimeoutMs)
+                    .spoolDirectory(spoolDirectory)
+                    .spoolSegmentBytes(spoolSegmentBytes)
+                    .spoolMaxBytes(spoolMaxBytes)
+                    .build();
+        }
+
+        HttpTransportSettings transportSettings = HttpTransportSettings.builder()
+                .maxConnections(maxConnections)
+                .connectTimeoutMs(connectTimeoutMs)
+                .readTimeoutMs(readTimeoutMs)
+                .poolTimeoutMs(poolTimeoutMs)
+                .idleTimeoutMs(idleTimeoutMs)
+                .gzip(gzip)
+                .build();
+
+        CircuitBreakerSettings circuitBreakerSettings = CircuitBreakerSettings.builder()
+                .failureThreshold(circuitFailureThreshold)
+                .openDurationMs(circuitOpenDurationMs)
+                .build();
+
+        StatsClient statsClient = new StatsClient(statsServerUrl, settings, transportSettings, circuitBreakerSettings);
+        statsClient.setObservationRegistry(observationRegistry);
+        return statsClient;
+    }
+
+    // Метрики очереди хитов, доступные через actuator
     @Bean
-    public StatsClient statsClient() {
-        return new StatsClient(statsServerUrl);
+    public MeterBinder statsClientMetrics(StatsClient statsClient) {
+        return registry -> {
+            FunctionCounter.builder("stats.client.hits.queued", statsClient, StatsClient::getQueuedHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.dropped", statsClient, StatsClient::getDroppedHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.flushed", statsClient, StatsClient::getFlushedHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.failed", statsClient, StatsClient::getFailedHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.spooled", statsClient, StatsClient::getSpooledHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.replayed", statsClient, StatsClient::getReplayedHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.hits.spool.discarded", statsClient,
+                            StatsClient::getSpoolDiscardedHits)
+                    .register(registry);
+            Gauge.builder("stats.client.hits.pending", statsClient, StatsClient::getPendingHits)
+                    .register(registry);
+            FunctionCounter.builder("stats.client.circuit.rejected", statsClient,
+                            StatsClient::getRejectedStatsRequests)
+                    .register(registry);
+            // Состояние выключателя: 1 у текущего состояния, 0 у остальных
+            for (CircuitState state : CircuitState.values()) {
+                Gauge.builder("stats.client.circuit.state", statsClient,
+                                client -> client.getCircuitState() == state ? 1 : 0)
+                        .tag("state", state.name())
+                        .register(registry);
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package ru.practicum.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/*
+ Ограничение числа одновременно обрабатываемых запросов при spring.threads.virtual.enabled=true.
+ На платформенных потоках Tomcat обрабатывает не больше server.tomcat.threads.max запросов, остальные ждут
+ в очереди соединений. На виртуальных потоках этого ограничения нет: все запросы сразу встают в очередь
+ пула соединений HikariCP и при перегрузке падают по spring.datasource.hikari.connection-timeout.
+ Фильтр возвращает ограничение, а ожидание разрешения не занимает платформенный поток и не ограничено по времени.
+ Значение по умолчанию рассчитано на пул из 10 соединений: запрос держит соединение и во время обращения
+ к сервису статистики, поэтому при 200 одновременных запросах часть из них не дожидалась соединения за 30 с.
+ При увеличении пула соединений ограничение можно поднять
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    @Value("${requests.max-concurrent:50}")
+    private int maxConcurrentRequests;
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxConcurrentRequests));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    static class ConcurrencyLimitFilter extends OncePerRequestFilter {
+        private final Semaphore permits;
+
+        ConcurrencyLimitFilter(int maxConcurrentRequests) {
+            this.permits = new Semaphore(maxConcurrentRequests, true);
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Ожидание обработки запроса прервано", e);
+            }
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
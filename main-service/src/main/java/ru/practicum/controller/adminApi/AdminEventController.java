@@ -1,9 +1,11 @@
 package ru.practicum.controller.adminApi;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.dto.event.EventCursor;
 import ru.practicum.dto.event.EventFullDto;
 import ru.practicum.dto.event.UpdateEventAdminRequest;
 import ru.practicum.service.EventService;
@@ -24,10 +26,20 @@ public class AdminEventController {
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeStart,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int from,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            HttpServletResponse response) {
 
-        return eventService.getAdminEvents(users, states, categories, rangeStart, rangeEnd, from, size);
+        List<EventFullDto> events = eventService.getAdminEvents(users, states, categories, rangeStart, rangeEnd,
+                after, from, size);
+
+        // Полная страница: возвращаем курсор для перехода к следующей без OFFSET
+        if (!events.isEmpty() && events.size() == size) {
+            EventFullDto last = events.get(events.size() - 1);
+            response.setHeader(EventCursor.NEXT_CURSOR_HEADER, EventCursor.of(false, null, last.getId()).encode());
+        }
+        return events;
     }
 
     @PatchMapping("/{eventId}")
@@ -3,8 +3,10 @@ package ru.practicum.controller.publicApi;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.dto.category.CategoryDto;
 import ru.practicum.service.CategoryService;
+import ru.practicum.service.ETags;
 
 import java.util.List;
 
@@ -17,12 +19,19 @@ public class PublicCategoryController {
 
     @GetMapping
     public List<CategoryDto> getCategories(@RequestParam(defaultValue = "0") int from,
-                                           @RequestParam(defaultValue = "10") int size) {
-        return categoryService.getCategories(from, size);
+                                           @RequestParam(defaultValue = "10") int size,
+                                           WebRequest webRequest) {
+        // Категории берутся из кэша, поэтому версия страницы вычисляется по уже готовому списку
+        List<CategoryDto> categories = categoryService.getCategories(from, size);
+        String etag = ETags.of(categories.stream()
+                .map(category -> category.getId() + ":" + category.getUpdatedOn())
+                .toArray());
+        return webRequest.checkNotModified(etag) ? null : categories;
     }
 
     @GetMapping("/{categoryId}")
-    public CategoryDto getCategory(@PathVariable Long categoryId) {
-        return categoryService.getCategory(categoryId);
+    public CategoryDto getCategory(@PathVariable Long categoryId, WebRequest webRequest) {
+        CategoryDto category = categoryService.getCategory(categoryId);
+        return webRequest.checkNotModified(ETags.of(category.getId(), category.getUpdatedOn())) ? null : category;
     }
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package ru.practicum.controller.publicApi;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.practicum.dto.compilation.CompilationDto;
 import ru.practicum.service.CompilationService;
+import ru.practicum.service.ETags;
 
 import java.util.List;
 
@@ -16,12 +18,19 @@ public class PublicCompilationController {
     @GetMapping
     public List<CompilationDto> getCompilations(@RequestParam(required = false) Boolean pinned,
                                                 @RequestParam(defaultValue = "0") int from,
-                                                @RequestParam(defaultValue = "10") int size) {
-        return compilationService.getCompilations(pinned, from, size);
+                                                @RequestParam(defaultValue = "10") int size,
+                                                WebRequest webRequest) {
+        // Подборки берутся из кэша готовых ответов вместе с их ETag, версия страницы складывается из них
+        List<CompilationDto> compilations = compilationService.getCompilations(pinned, from, size);
+        String etag = ETags.of(compilations.stream()
+                .map(CompilationDto::getEtag)
+                .toArray());
+        return webRequest.checkNotModified(etag) ? null : compilations;
     }
 
     @GetMapping("/{compId}")
-    public CompilationDto getCompilation(@PathVariable Long compId) {
-        return compilationService.getCompilation(compId);
+    public CompilationDto getCompilation(@PathVariable Long compId, WebRequest webRequest) {
+        CompilationDto compilation = compilationService.getCompilation(compId);
+        return webRequest.checkNotModified(compilation.getEtag()) ? null : compilation;
     }
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package ru.practicum.controller.publicApi;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.dto.event.EventCursor;
 import ru.practicum.dto.event.EventFullDto;
 import ru.practicum.dto.event.EventShortDto;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.service.EventService;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -16,6 +21,8 @@ import java.util.List;
 @RequestMapping("/events")
 @RequiredArgsConstructor
 public class PublicEventController {
+    private static final int MAX_TRENDING_SIZE = 100;
+
     private final EventService eventService;
 
     @GetMapping
@@ -27,21 +34,62 @@ public class PublicEventController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime rangeEnd,
             @RequestParam(defaultValue = "false") Boolean onlyAvailable,
             @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "0") int from,
             @RequestParam(defaultValue = "10") int size,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) {
 
         if (rangeStart != null && rangeEnd != null && !rangeStart.isBefore(rangeEnd)) {
             throw new ValidationException("Параметр 'rangeStart' должен быть раньше 'rangeEnd'");
         }
 
-        return eventService.getPublicEvents(text, categories, paid, rangeStart, rangeEnd,
-                onlyAvailable, sort, from, size,
+        List<EventShortDto> events = eventService.getPublicEvents(text, categories, paid, rangeStart, rangeEnd,
+                onlyAvailable, sort, after, from, size,
                 request.getRemoteAddr(), request.getRequestURI());
+
+        // Полная страница: возвращаем курсор для перехода к следующей без OFFSET.
+        // Для сортировки по релевантности и просмотрам курсор не поддерживается
+        if (!events.isEmpty() && events.size() == size && !"RELEVANCE".equals(sort) && !"VIEWS".equals(sort)) {
+            EventShortDto last = events.get(events.size() - 1);
+            response.setHeader(EventCursor.NEXT_CURSOR_HEADER,
+                    EventCursor.of("EVENT_DATE".equals(sort), last.getEventDate(), last.getId()).encode());
+        }
+        return events;
+    }
+
+    // Самые просматриваемые за последнее окно события, например /events/trending?window=1h&size=10
+    @GetMapping("/trending")
+    public List<EventShortDto> getTrendingEvents(@RequestParam(defaultValue = "1h") String window,
+                                                 @RequestParam(defaultValue = "10") int size) {
+        Duration duration = parseWindow(window);
+        if (duration.isNegative() || duration.isZero()) {
+            throw new ValidationException("Параметр 'window' должен быть положительным");
+        }
+        if (size <= 0 || size > MAX_TRENDING_SIZE) {
+            throw new ValidationException("Параметр 'size' должен быть от 1 до " + MAX_TRENDING_SIZE);
+        }
+        return eventService.getTrendingEvents(duration, size);
     }
 
     @GetMapping("/{id}")
-    public EventFullDto getEvent(@PathVariable Long id, HttpServletRequest request) {
+    public EventFullDto getEvent(@PathVariable Long id, HttpServletRequest request, WebRequest webRequest) {
+        // Совпадение If-None-Match: 304 без загрузки события и запроса просмотров.
+        // Просмотр учитывается и в этом случае: иначе счетчик зависел бы от кэширования на стороне клиента
+        String etag = eventService.getPublicEventETag(id);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            eventService.savePublicEventHit(request.getRemoteAddr(), request.getRequestURI());
+            return null;
+        }
         return eventService.getPublicEvent(id, request.getRemoteAddr(), request.getRequestURI());
     }
-}
\ No newline at end of file
+
+    // Окно в простом (15m, 1h) или ISO-8601 (PT15M) формате
+    private Duration parseWindow(String window) {
+        try {
+            return DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный параметр 'window': " + window);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.dto.category;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Id;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -8,6 +9,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,4 +22,8 @@ public class CategoryDto {
     @NotBlank
     @Size(min = 1, max = 50)
     private String name;
+
+    // Версия категории для ETag, в ответ не выводится
+    @JsonIgnore
+    private LocalDateTime updatedOn;
 }
\ No newline at end of file
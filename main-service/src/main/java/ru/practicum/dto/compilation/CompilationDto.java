@@ -1,5 +1,6 @@
 package ru.practicum.dto.compilation;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,4 +18,8 @@ public class CompilationDto {
     private Set<EventShortDto> events;
     private Boolean pinned;
     private String title;
+
+    // ETag собранного ответа, в ответ не выводится
+    @JsonIgnore
+    private String etag;
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package ru.practicum.dto.event;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.practicum.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/*
+ Непрозрачный курсор постраничного просмотра событий: позиция последнего события на странице.
+ При сортировке по дате события хранит дату и идентификатор, иначе только идентификатор.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class EventCursor {
+    // Заголовок ответа с курсором следующей страницы
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String BY_ID = "i";
+    private static final String BY_EVENT_DATE = "d";
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime eventDate;
+    private final Long id;
+
+    public static EventCursor of(boolean byEventDate, LocalDateTime eventDate, Long id) {
+        return new EventCursor(byEventDate ? eventDate : null, id);
+    }
+
+    public boolean isByEventDate() {
+        return eventDate != null;
+    }
+
+    public String encode() {
+        String value = isByEventDate()
+                ? BY_EVENT_DATE + SEPARATOR + eventDate + SEPARATOR + id
+                : BY_ID + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EventCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\" + SEPARATOR);
+            if (parts.length == 2 && BY_ID.equals(parts[0])) {
+                return new EventCursor(null, Long.parseLong(parts[1]));
+            }
+            if (parts.length == 3 && BY_EVENT_DATE.equals(parts[0])) {
+                return new EventCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Обрабатывается ниже как некорректный курсор
+        }
+        throw new ValidationException("Некорректный курсор 'after': " + cursor);
+    }
+}
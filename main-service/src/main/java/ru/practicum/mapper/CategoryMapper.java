@@ -15,6 +15,16 @@ public class CategoryMapper {
         return CategoryDto.builder()
                 .id(category.getId())
                 .name(category.getName())
+                .updatedOn(category.getUpdatedOn())
+                .build();
+    }
+
+    // Ссылка на уже существующую категорию (например, из кэша) для привязки к событию без повторного чтения из БД
+    public static Category toReference(CategoryDto categoryDto) {
+        return Category.builder()
+                .id(categoryDto.getId())
+                .name(categoryDto.getName())
+                .updatedOn(categoryDto.getUpdatedOn())
                 .build();
     }
 }
\ No newline at end of file
@@ -1,21 +1,27 @@
 package ru.practicum.mapper;
 
 import ru.practicum.dto.compilation.CompilationDto;
+import ru.practicum.dto.event.EventShortDto;
 import ru.practicum.model.compilation.Compilation;
 
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CompilationMapper {
 
-    public static CompilationDto toDto(Compilation compilation) {
+    public static CompilationDto toDto(Compilation compilation, Map<Long, Long> views) {
         return CompilationDto.builder()
                 .id(compilation.getId())
                 .events(compilation.getEvents() != null ?
                         compilation.getEvents().stream()
-                                .map(EventMapper::toShortDto)
+                                .map(event -> {
+                                    EventShortDto dto = EventMapper.toShortDto(event);
+                                    dto.setViews(views.getOrDefault(event.getId(), 0L));
+                                    return dto;
+                                })
                                 .collect(Collectors.toSet()) : null)
                 .pinned(compilation.getPinned())
                 .title(compilation.getTitle())
                 .build();
     }
-}
\ No newline at end of file
+}
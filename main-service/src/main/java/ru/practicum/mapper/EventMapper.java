@@ -1,10 +1,13 @@
 package ru.practicum.mapper;
 
+import ru.practicum.dto.category.CategoryDto;
 import ru.practicum.dto.event.EventFullDto;
 import ru.practicum.dto.event.EventShortDto;
 import ru.practicum.dto.event.LocationDto;
 import ru.practicum.dto.event.NewEventDto;
+import ru.practicum.dto.user.UserShortDto;
 import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventShortView;
 import ru.practicum.model.event.EventState;
 import ru.practicum.model.event.Location;
 
@@ -37,6 +40,19 @@ public class EventMapper {
                 .build();
     }
 
+    public static EventShortDto toShortDto(EventShortView view) {
+        return EventShortDto.builder()
+                .id(view.id())
+                .annotation(view.annotation())
+                .category(CategoryDto.builder().id(view.categoryId()).name(view.categoryName()).build())
+                .confirmedRequests(view.confirmedRequests() != null ? view.confirmedRequests().longValue() : 0L)
+                .eventDate(view.eventDate())
+                .initiator(new UserShortDto(view.initiatorId(), view.initiatorName()))
+                .paid(view.paid())
+                .title(view.title())
+                .build();
+    }
+
     public static EventFullDto toFullDto(Event event) {
         return EventFullDto.builder()
                 .id(event.getId())
@@ -2,6 +2,7 @@ package ru.practicum.mapper;
 
 import ru.practicum.dto.request.ParticipationRequestDto;
 import ru.practicum.model.request.ParticipationRequest;
+import ru.practicum.model.request.RequestStatusChange;
 
 public class RequestMapper {
 
@@ -14,4 +15,14 @@ public class RequestMapper {
                 .status(request.getStatus().name())
                 .build();
     }
+
+    public static ParticipationRequestDto toDto(RequestStatusChange change) {
+        return ParticipationRequestDto.builder()
+                .id(change.getId())
+                .created(change.getCreated())
+                .event(change.getEvent())
+                .requester(change.getRequester())
+                .status(change.getStatus())
+                .build();
+    }
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
 
 @Data
 @Builder
@@ -20,4 +23,9 @@ public class Category {
 
     @Column(name = "name", nullable = false)
     private String name;
+
+    // Время последнего изменения: входит в версию (ETag) категории и событий этой категории
+    @UpdateTimestamp
+    @Column(name = "updated_on")
+    private LocalDateTime updatedOn;
 }
\ No newline at end of file
@@ -5,8 +5,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.practicum.model.event.Event;
 
+import java.time.LocalDateTime;
 import java.util.Set;
 
 @Data
@@ -33,4 +35,9 @@ public class Compilation {
 
     @Column(name = "title", nullable = false, length = 50)
     private String title;
+
+    // Время последнего изменения, включая изменение состава событий; входит в версию (ETag) подборки
+    @UpdateTimestamp
+    @Column(name = "updated_on")
+    private LocalDateTime updatedOn;
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 import ru.practicum.model.category.Category;
 import ru.practicum.model.user.User;
 
@@ -17,7 +18,14 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "events")
+@NamedEntityGraph(name = Event.EVENT_DETAILS, attributeNodes = {
+        @NamedAttributeNode("category"),
+        @NamedAttributeNode("initiator")
+})
 public class Event {
+    // Граф для списков и карточек событий: категория и инициатор нужны для DTO
+    public static final String EVENT_DETAILS = "Event.details";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -36,6 +44,11 @@ public class Event {
     @Column(name = "created_on")
     private LocalDateTime createdOn;
 
+    // Время последнего изменения, включая счетчик подтвержденных заявок; входит в версию (ETag) события
+    @UpdateTimestamp
+    @Column(name = "updated_on")
+    private LocalDateTime updatedOn;
+
     @Column(name = "description", length = 7000)
     private String description;
 
@@ -0,0 +1,16 @@
+package ru.practicum.model.event;
+
+import java.time.LocalDateTime;
+
+// Проекция события для кратких списков: только поля EventShortDto, без описания и без отслеживания изменений
+public record EventShortView(Long id,
+                             String annotation,
+                             Long categoryId,
+                             String categoryName,
+                             Integer confirmedRequests,
+                             LocalDateTime eventDate,
+                             Long initiatorId,
+                             String initiatorName,
+                             Boolean paid,
+                             String title) {
+}
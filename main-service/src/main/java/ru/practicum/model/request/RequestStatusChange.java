@@ -0,0 +1,16 @@
+package ru.practicum.model.request;
+
+import java.time.LocalDateTime;
+
+// Строка заявки, возвращаемая массовым изменением статуса (UPDATE ... RETURNING)
+public interface RequestStatusChange {
+    Long getId();
+
+    LocalDateTime getCreated();
+
+    Long getEvent();
+
+    Long getRequester();
+
+    String getStatus();
+}
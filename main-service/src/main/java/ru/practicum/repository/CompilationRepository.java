@@ -2,10 +2,14 @@ package ru.practicum.repository;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.model.compilation.Compilation;
 
 import java.util.List;
 
 public interface CompilationRepository extends JpaRepository<Compilation, Long> {
-    List<Compilation> findByPinned(Boolean pinned, Pageable pageable);
-}
\ No newline at end of file
+    // Идентификаторы подборок страницы; сами подборки берутся из кэша ответов
+    @Query("SELECT c.id FROM Compilation c WHERE :pinned IS NULL OR c.pinned = :pinned")
+    List<Long> findIds(@Param("pinned") Boolean pinned, Pageable pageable);
+}
@@ -1,21 +1,34 @@
 package ru.practicum.repository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventShortView;
 import ru.practicum.model.event.EventState;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+/*
+ Порядок выдачи в поисковых запросах задается сортировкой Pageable.
+ Параметры after* включают постраничный просмотр по ключу: выборка продолжается после события из курсора
+ по id или по паре (eventDate, id), без OFFSET.
+ Запросы, результат которых преобразуется в DTO, загружают категорию и инициатора тем же SELECT
+ через граф сущности EVENT_DETAILS, чтобы не выполнять по два дополнительных запроса на событие.
+ */
 public interface EventRepository extends JpaRepository<Event, Long> {
+    @EntityGraph(Event.EVENT_DETAILS)
     List<Event> findByInitiatorId(Long userId, Pageable pageable);
 
+    @EntityGraph(Event.EVENT_DETAILS)
     Optional<Event> findByIdAndInitiatorId(Long eventId, Long userId);
 
+    @EntityGraph(Event.EVENT_DETAILS)
     @Query("""
             SELECT e FROM Event e
             WHERE (:users IS NULL OR e.initiator.id IN :users)
@@ -23,17 +36,23 @@ public interface EventRepository extends JpaRepository<Event, Long> {
               AND (:categories IS NULL OR e.category.id IN :categories)
               AND e.eventDate >= COALESCE(:rangeStart, e.eventDate)
               AND e.eventDate <= COALESCE(:rangeEnd,   e.eventDate)
-            ORDER BY e.id
+              AND (:afterId IS NULL OR e.id > :afterId)
             """)
     List<Event> findAdminEvents(@Param("users") List<Long> users,
                                 @Param("states") List<EventState> states,
                                 @Param("categories") List<Long> categories,
                                 @Param("rangeStart") LocalDateTime rangeStart,
                                 @Param("rangeEnd") LocalDateTime rangeEnd,
+                                @Param("afterId") Long afterId,
                                 Pageable pageable);
 
+    // Публичный поиск сразу в проекцию EventShortView: описание и остальные поля сущности не читаются
     @Query("""
-            SELECT e FROM Event e
+            SELECT new ru.practicum.model.event.EventShortView(e.id, e.annotation, c.id, c.name,
+                   e.confirmedRequests, e.eventDate, u.id, u.name, e.paid, e.title)
+            FROM Event e
+            JOIN e.category c
+            JOIN e.initiator u
             WHERE e.state = 'PUBLISHED'
                AND (:text IS NULL OR (
                  LOWER(e.annotation) LIKE :text
@@ -48,19 +67,158 @@ public interface EventRepository extends JpaRepository<Event, Long> {
                     OR COALESCE(e.participantLimit, 0) = 0
                     OR COALESCE(e.confirmedRequests, 0) < COALESCE(e.participantLimit, 0)
                   )
-            ORDER BY e.id
+              AND (:afterId IS NULL OR e.id > :afterId)
+              AND (:afterDateId IS NULL OR (
+                    e.eventDate >= :afterDate
+                    AND (e.eventDate > :afterDate OR e.id > :afterDateId)
+                  ))
             """)
-    List<Event> findPublicEvents(@Param("text") String text,
-                                 @Param("categories") List<Long> categories,
-                                 @Param("paid") Boolean paid,
-                                 @Param("rangeStart") LocalDateTime rangeStart,
-                                 @Param("rangeEnd") LocalDateTime rangeEnd,
-                                 @Param("onlyAvailable") Boolean onlyAvailable,
-                                 Pageable pageable);
+    List<EventShortView> findPublicEvents(@Param("text") String text,
+                                          @Param("categories") List<Long> categories,
+                                          @Param("paid") Boolean paid,
+                                          @Param("rangeStart") LocalDateTime rangeStart,
+                                          @Param("rangeEnd") LocalDateTime rangeEnd,
+                                          @Param("onlyAvailable") Boolean onlyAvailable,
+                                          @Param("afterId") Long afterId,
+                                          @Param("afterDate") LocalDateTime afterDate,
+                                          @Param("afterDateId") Long afterDateId,
+                                          Pageable pageable);
+
+    // Идентификаторы всех опубликованных событий под фильтрами findPublicEvents, например для сортировки по просмотрам
+    @Query("""
+            SELECT e.id FROM Event e
+            WHERE e.state = 'PUBLISHED'
+               AND (:text IS NULL OR (
+                 LOWER(e.annotation) LIKE :text
+                 OR LOWER(e.description) LIKE :text
+               ))
+              AND (:categories IS NULL OR e.category.id IN :categories)
+              AND (:paid IS NULL OR e.paid = :paid)
+              AND e.eventDate >= COALESCE(:rangeStart, e.eventDate)
+              AND e.eventDate <= COALESCE(:rangeEnd,   e.eventDate)
+              AND (
+                    :onlyAvailable IS NULL OR :onlyAvailable = false
+                    OR COALESCE(e.participantLimit, 0) = 0
+                    OR COALESCE(e.confirmedRequests, 0) < COALESCE(e.participantLimit, 0)
+                  )
+            """)
+    List<Long> findPublicEventIds(@Param("text") String text,
+                                  @Param("categories") List<Long> categories,
+                                  @Param("paid") Boolean paid,
+                                  @Param("rangeStart") LocalDateTime rangeStart,
+                                  @Param("rangeEnd") LocalDateTime rangeEnd,
+                                  @Param("onlyAvailable") Boolean onlyAvailable,
+                                  Pageable pageable);
+
+    /*
+     Полнотекстовый поиск опубликованных событий по индексу search_vector (только PostgreSQL).
+     Возвращает идентификаторы страницы в порядке сортировки: RELEVANCE — по рангу совпадения,
+     EVENT_DATE — по дате события, иначе по id. Фильтры и курсоры совпадают с findPublicEvents.
+     */
+    @Query(value = """
+            SELECT e.id FROM events e
+            WHERE e.state = 'PUBLISHED'
+              AND e.search_vector @@ to_tsquery('simple', :query)
+              AND (:hasCategories = false OR e.category_id IN (:categories))
+              AND (CAST(:paid AS BOOLEAN) IS NULL OR e.paid = CAST(:paid AS BOOLEAN))
+              AND e.event_date >= COALESCE(CAST(:rangeStart AS TIMESTAMP), e.event_date)
+              AND e.event_date <= COALESCE(CAST(:rangeEnd AS TIMESTAMP), e.event_date)
+              AND (
+                    :onlyAvailable = false
+                    OR COALESCE(e.participant_limit, 0) = 0
+                    OR COALESCE(e.confirmed_requests, 0) < e.participant_limit
+                  )
+              AND (CAST(:afterId AS BIGINT) IS NULL OR e.id > CAST(:afterId AS BIGINT))
+              AND (CAST(:afterDateId AS BIGINT) IS NULL OR (
+                    e.event_date >= CAST(:afterDate AS TIMESTAMP)
+                    AND (e.event_date > CAST(:afterDate AS TIMESTAMP) OR e.id > CAST(:afterDateId AS BIGINT))
+                  ))
+            ORDER BY CASE WHEN :sort = 'RELEVANCE'
+                          THEN ts_rank(e.search_vector, to_tsquery('simple', :query)) END DESC,
+                     CASE WHEN :sort = 'EVENT_DATE' THEN e.event_date END,
+                     e.id
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    List<Long> searchPublicEventIds(@Param("query") String query,
+                                    @Param("hasCategories") boolean hasCategories,
+                                    @Param("categories") List<Long> categories,
+                                    @Param("paid") Boolean paid,
+                                    @Param("rangeStart") LocalDateTime rangeStart,
+                                    @Param("rangeEnd") LocalDateTime rangeEnd,
+                                    @Param("onlyAvailable") boolean onlyAvailable,
+                                    @Param("afterId") Long afterId,
+                                    @Param("afterDate") LocalDateTime afterDate,
+                                    @Param("afterDateId") Long afterDateId,
+                                    @Param("sort") String sort,
+                                    @Param("limit") int limit,
+                                    @Param("offset") long offset);
 
+    @EntityGraph(Event.EVENT_DETAILS)
     List<Event> findByIdIn(List<Long> eventIds);
 
+    @Query("""
+            SELECT new ru.practicum.model.event.EventShortView(e.id, e.annotation, c.id, c.name,
+                   e.confirmedRequests, e.eventDate, u.id, u.name, e.paid, e.title)
+            FROM Event e
+            JOIN e.category c
+            JOIN e.initiator u
+            WHERE e.id IN :ids
+            """)
+    List<EventShortView> findShortViewsByIdIn(@Param("ids") List<Long> ids);
+
+    @Query("""
+            SELECT new ru.practicum.model.event.EventShortView(e.id, e.annotation, c.id, c.name,
+                   e.confirmedRequests, e.eventDate, u.id, u.name, e.paid, e.title)
+            FROM Event e
+            JOIN e.category c
+            JOIN e.initiator u
+            WHERE e.id IN :ids
+              AND e.state = :state
+            """)
+    List<EventShortView> findShortViewsByIdInAndState(@Param("ids") List<Long> ids,
+                                                      @Param("state") EventState state);
+
     List<Event> findByCategoryId(Long categoryId);
 
+    @Query("SELECT COALESCE(e.confirmedRequests, 0) FROM Event e WHERE e.id = :eventId")
+    Integer findConfirmedRequests(@Param("eventId") Long eventId);
+
+    /*
+     Атомарное увеличение счетчика подтвержденных заявок с проверкой лимита участников в одном UPDATE.
+     Параллельные вызовы сериализуются блокировкой строки, поэтому лимит не может быть превышен.
+     Возвращает 0, если свободных мест меньше count.
+     */
+    @Modifying
+    @Query("""
+            UPDATE Event e
+            SET e.confirmedRequests = COALESCE(e.confirmedRequests, 0) + :count,
+                e.updatedOn = LOCAL DATETIME
+            WHERE e.id = :eventId
+              AND (COALESCE(e.participantLimit, 0) = 0
+                   OR COALESCE(e.confirmedRequests, 0) + :count <= e.participantLimit)
+            """)
+    int incrementConfirmedRequests(@Param("eventId") Long eventId, @Param("count") int count);
+
+    @Modifying
+    @Query("""
+            UPDATE Event e
+            SET e.confirmedRequests = COALESCE(e.confirmedRequests, 0) - :count,
+                e.updatedOn = LOCAL DATETIME
+            WHERE e.id = :eventId
+              AND COALESCE(e.confirmedRequests, 0) >= :count
+            """)
+    int decrementConfirmedRequests(@Param("eventId") Long eventId, @Param("count") int count);
+
+    @EntityGraph(Event.EVENT_DETAILS)
     Optional<Event> findByIdAndState(Long id, EventState state);
+
+    // Время последнего изменения события или его категории: версия карточки события без загрузки сущности
+    @Query("""
+            SELECT GREATEST(e.updatedOn, c.updatedOn)
+            FROM Event e
+            JOIN e.category c
+            WHERE e.id = :eventId
+              AND e.state = :state
+            """)
+    Optional<LocalDateTime> findUpdatedOn(@Param("eventId") Long eventId, @Param("state") EventState state);
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.practicum.model.request.ParticipationRequest;
 import ru.practicum.model.request.RequestStatus;
+import ru.practicum.model.request.RequestStatusChange;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,5 +22,29 @@ public interface ParticipationRequestRepository extends JpaRepository<Participat
 
     Long countByEventIdAndStatus(Long eventId, RequestStatus status);
 
-    List<ParticipationRequest> findByIdIn(List<Long> requestIds);
-}
\ No newline at end of file
+    /*
+     Массовое изменение статуса ожидающих заявок события одним UPDATE.
+     Заявки другого события и уже обработанные заявки не изменяются и не возвращаются.
+     */
+    @Query(value = """
+            UPDATE participation_requests
+            SET status = :status
+            WHERE event_id = :eventId
+              AND id IN (:ids)
+              AND status = 'PENDING'
+            RETURNING id, created, event_id AS event, requester_id AS requester, status
+            """, nativeQuery = true)
+    List<RequestStatusChange> updatePendingStatus(@Param("eventId") Long eventId,
+                                                  @Param("ids") List<Long> ids,
+                                                  @Param("status") String status);
+
+    // Отклонение всех оставшихся ожидающих заявок события, когда лимит участников исчерпан
+    @Modifying
+    @Query(value = """
+            UPDATE participation_requests
+            SET status = 'REJECTED'
+            WHERE event_id = :eventId
+              AND status = 'PENDING'
+            """, nativeQuery = true)
+    int rejectPendingRequests(@Param("eventId") Long eventId);
+}
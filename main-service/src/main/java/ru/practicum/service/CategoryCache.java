@@ -0,0 +1,82 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.CacheConfig;
+import ru.practicum.config.ReplicaLagWindow;
+import ru.practicum.dto.category.CategoryDto;
+import ru.practicum.mapper.CategoryMapper;
+import ru.practicum.repository.CategoryRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ Read-through кэш категорий: отдельные категории по id и полный упорядоченный список.
+ Вынесен в отдельный бин, чтобы вызовы из CategoryServiceImpl и EventServiceImpl
+ проходили через кэширующий прокси.
+ В окно отставания реплик после сброса (ReplicaLagWindow) загруженные категории в кэш не сохраняются
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryCache {
+    private static final String ALL_CATEGORIES_KEY = "all";
+
+    private final CategoryRepository categoryRepository;
+    private final CacheManager cacheManager;
+    private final ReplicaLagWindow replicaLagWindow;
+    private volatile long storableFrom = System.nanoTime();
+
+    // Категория по идентификатору; отсутствующие категории не кэшируются
+    @Cacheable(cacheNames = CacheConfig.CATEGORIES, unless = "#result == null || !@categoryCache.isStorable()")
+    public Optional<CategoryDto> findCategory(Long categoryId) {
+        return categoryRepository.findById(categoryId)
+                .map(CategoryMapper::toDto);
+    }
+
+    // Все категории в порядке идентификаторов
+    @Cacheable(cacheNames = CacheConfig.CATEGORY_LISTS, key = "'" + ALL_CATEGORIES_KEY + "'",
+            unless = "!@categoryCache.isStorable()")
+    public List<CategoryDto> getAllCategories() {
+        return categoryRepository.findAll(Sort.by("id")).stream()
+                .map(CategoryMapper::toDto)
+                .toList();
+    }
+
+    // Загруженное значение можно сохранить: окно отставания реплик после последнего сброса прошло
+    public boolean isStorable() {
+        return replicaLagWindow.isClosed(storableFrom);
+    }
+
+    // Сброс записей после фиксации транзакции, чтобы параллельное чтение не вернуло в кэш старые данные
+    public void evictAfterCommit(Long categoryId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(categoryId);
+                }
+            });
+        } else {
+            evict(categoryId);
+        }
+    }
+
+    private void evict(Long categoryId) {
+        storableFrom = replicaLagWindow.closesAt();
+        Cache categories = cacheManager.getCache(CacheConfig.CATEGORIES);
+        if (categories != null && categoryId != null) {
+            categories.evict(categoryId);
+        }
+        Cache lists = cacheManager.getCache(CacheConfig.CATEGORY_LISTS);
+        if (lists != null) {
+            lists.evict(ALL_CATEGORIES_KEY);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,7 +13,6 @@ import ru.practicum.repository.CategoryRepository;
 import ru.practicum.repository.EventRepository;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +21,8 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final EventRepository eventRepository;
+    private final CategoryCache categoryCache;
+    private final CompilationCache compilationCache;
 
      /*
      Методы для работы с категориями
@@ -32,13 +32,13 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     @Transactional
     public CategoryDto createCategory(CategoryDto categoryDto) {
-        if (categoryRepository.findAll().stream()
-                .anyMatch(category -> category.getName().equals(categoryDto.getName()))) {
+        if (categoryRepository.existsByName(categoryDto.getName())) {
             throw new ConflictException("Категория с таким названием уже существует");
         }
 
         Category category = CategoryMapper.toEntity(categoryDto);
         Category savedCategory = categoryRepository.save(category);
+        categoryCache.evictAfterCommit(savedCategory.getId());
         return CategoryMapper.toDto(savedCategory);
     }
 
@@ -54,6 +54,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.delete(category);
+        categoryCache.evictAfterCommit(categoryId);
     }
 
     // Обновление категории по идентификатору
@@ -79,6 +80,9 @@ public class CategoryServiceImpl implements CategoryService {
         if (categoryDto.getName() != null) {
             category.setName(categoryDto.getName());
             Category updatedCategory = categoryRepository.save(category);
+            categoryCache.evictAfterCommit(categoryId);
+            // Название категории входит в события закэшированных подборок
+            compilationCache.evictAllAfterCommit();
             return CategoryMapper.toDto(updatedCategory);
         }
 
@@ -86,22 +90,23 @@ public class CategoryServiceImpl implements CategoryService {
         return CategoryMapper.toDto(category);
     }
 
-    // Получение списка категорий
+    // Получение списка категорий: страница вырезается из закэшированного полного списка
     @Override
     public List<CategoryDto> getCategories(int from, int size) {
-        PageRequest pageRequest = PageRequest.of(from, size);
-        Page<Category> categoryPage = categoryRepository.findAll(pageRequest);
+        long offset = PageRequest.of(from, size).getOffset();
+        List<CategoryDto> categories = categoryCache.getAllCategories();
+        if (offset >= categories.size()) {
+            return List.of();
+        }
 
-        return categoryPage.getContent().stream()
-                .map(CategoryMapper::toDto)
-                .collect(Collectors.toList());
+        int fromIndex = (int) offset;
+        return categories.subList(fromIndex, Math.min(fromIndex + size, categories.size()));
     }
 
     // Получение категории по идентификатору
     @Override
     public CategoryDto getCategory(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId)
+        return categoryCache.findCategory(categoryId)
                 .orElseThrow(() -> new NotFoundException("Категория с id=" + categoryId + " не найдена"));
-        return CategoryMapper.toDto(category);
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.config.CacheConfig;
+import ru.practicum.config.ReplicaLagWindow;
+import ru.practicum.dto.compilation.CompilationDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ Кэш готовых ответов по подборкам: полностью собранные CompilationDto (вместе с событиями и просмотрами)
+ по идентификатору подборки и списки идентификаторов для страниц GET /compilations.
+ Подборки сбрасываются при изменении самих подборок и входящих в них событий,
+ просмотры обновляются по истечении TTL кэша (compilations.cache.ttl-seconds).
+ В окно отставания реплик после сброса (ReplicaLagWindow) загруженные подборки в кэш не сохраняются
+ */
+@Component
+@RequiredArgsConstructor
+public class CompilationCache {
+    private final CacheManager cacheManager;
+    private final ReplicaLagWindow replicaLagWindow;
+    private volatile long storableFrom = System.nanoTime();
+
+    // Идентификаторы подборок страницы; при промахе загружаются через loader
+    public List<Long> getPageIds(Boolean pinned, int from, int size, Supplier<List<Long>> loader) {
+        String key = pinned + ":" + from + ":" + size;
+        if (isStorable()) {
+            return pages().get(key, loader::get);
+        }
+        @SuppressWarnings("unchecked")
+        List<Long> cached = pages().get(key, List.class);
+        return cached != null ? cached : loader.get();
+    }
+
+    // Подборки по идентификаторам; отсутствующие в кэше загружаются одним вызовом loader
+    public Map<Long, CompilationDto> getAll(Collection<Long> compIds,
+                                            Function<Collection<Long>, Map<Long, CompilationDto>> loader) {
+        Cache compilations = compilations();
+        Map<Long, CompilationDto> result = new HashMap<>();
+        List<Long> missed = new ArrayList<>();
+        for (Long compId : compIds) {
+            CompilationDto cached = compilations.get(compId, CompilationDto.class);
+            if (cached != null) {
+                result.put(compId, cached);
+            } else {
+                missed.add(compId);
+            }
+        }
+
+        if (!missed.isEmpty()) {
+            boolean storable = isStorable();
+            loader.apply(missed).forEach((compId, dto) -> {
+                if (storable) {
+                    compilations.put(compId, dto);
+                }
+                result.put(compId, dto);
+            });
+        }
+        return result;
+    }
+
+    // Сброс подборки и списков страниц после изменения подборки
+    public void evictAfterCommit(Long compId) {
+        afterCommit(() -> {
+            if (compId != null) {
+                compilations().evict(compId);
+            }
+            pages().clear();
+        });
+    }
+
+    // Сброс закэшированных подборок, в которые входит событие; состав страниц от событий не зависит
+    public void evictForEventAfterCommit(Long eventId) {
+        afterCommit(() -> {
+            Cache compilations = compilations();
+            if (compilations.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+                nativeCache.asMap().values().removeIf(value -> value instanceof CompilationDto dto
+                        && dto.getEvents() != null
+                        && dto.getEvents().stream().anyMatch(event -> Objects.equals(event.getId(), eventId)));
+            } else {
+                compilations.clear();
+            }
+        });
+    }
+
+    // Полный сброс, например после переименования категории, которая отображается в событиях подборок
+    public void evictAllAfterCommit() {
+        afterCommit(() -> {
+            compilations().clear();
+            pages().clear();
+        });
+    }
+
+    // Сброс выполняется после фиксации транзакции, чтобы параллельное чтение не вернуло в кэш старые данные
+    private void afterCommit(Runnable action) {
+        Runnable evict = () -> {
+            storableFrom = replicaLagWindow.closesAt();
+            action.run();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    // Загруженное значение можно сохранить: окно отставания реплик после последнего сброса прошло
+    private boolean isStorable() {
+        return replicaLagWindow.isClosed(storableFrom);
+    }
+
+    private Cache compilations() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.COMPILATIONS));
+    }
+
+    private Cache pages() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.COMPILATION_PAGES));
+    }
+}
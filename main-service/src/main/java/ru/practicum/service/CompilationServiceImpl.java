@@ -1,7 +1,12 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.compilation.CompilationDto;
@@ -14,18 +19,35 @@ import ru.practicum.model.event.Event;
 import ru.practicum.repository.CompilationRepository;
 import ru.practicum.repository.EventRepository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class CompilationServiceImpl implements CompilationService {
 
+    // Размер страницы GET /compilations по умолчанию (главная страница запрашивает закрепленные подборки)
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
     private final CompilationRepository compilationRepository;
     private final EventRepository eventRepository;
+    private final StatsService statsService;
+    private final CompilationCache compilationCache;
+
+    @Value("${compilations.cache.warm-on-startup:true}")
+    private boolean warmOnStartup;
+
+    @Value("${compilations.cache.warm-limit:100}")
+    private int warmLimit;
 
     /*
      Методы для работы с подборками событий
@@ -48,7 +70,8 @@ public class CompilationServiceImpl implements CompilationService {
                 .build();
 
         Compilation savedCompilation = compilationRepository.save(compilation);
-        return CompilationMapper.toDto(savedCompilation);
+        compilationCache.evictAfterCommit(savedCompilation.getId());
+        return toDtoWithViews(savedCompilation);
     }
 
     // Удаление подборки событий по идентификатору
@@ -58,6 +81,7 @@ public class CompilationServiceImpl implements CompilationService {
         Compilation compilation = compilationRepository.findById(compId)
                 .orElseThrow(() -> new NotFoundException("Подборка с id=" + compId + " не найдена"));
         compilationRepository.delete(compilation);
+        compilationCache.evictAfterCommit(compId);
     }
 
     // Обновление подборки событий по идентификатору
@@ -71,6 +95,8 @@ public class CompilationServiceImpl implements CompilationService {
             Set<Event> events = new HashSet<>(eventRepository.findByIdIn(
                     updateRequest.getEvents().stream().collect(Collectors.toList())));
             compilation.setEvents(events);
+            // Изменение только состава событий не делает подборку "грязной", время изменения обновляется явно
+            compilation.setUpdatedOn(LocalDateTime.now());
         }
 
         if (updateRequest.getPinned() != null) {
@@ -82,30 +108,86 @@ public class CompilationServiceImpl implements CompilationService {
         }
 
         Compilation updatedCompilation = compilationRepository.save(compilation);
-        return CompilationMapper.toDto(updatedCompilation);
+        compilationCache.evictAfterCommit(compId);
+        return toDtoWithViews(updatedCompilation);
     }
 
-    // Получение списка подборок событий
+    // Получение списка подборок событий: состав страницы и сами подборки берутся из кэша ответов
     @Override
     public List<CompilationDto> getCompilations(Boolean pinned, int from, int size) {
-        PageRequest pageRequest = PageRequest.of(from / size, size);
-
-        if (pinned != null) {
-            return compilationRepository.findByPinned(pinned, pageRequest).stream()
-                    .map(CompilationMapper::toDto)
-                    .collect(Collectors.toList());
-        } else {
-            return compilationRepository.findAll(pageRequest).stream()
-                    .map(CompilationMapper::toDto)
-                    .collect(Collectors.toList());
-        }
+        PageRequest pageRequest = PageRequest.of(from / size, size, Sort.by("id"));
+        List<Long> compIds = compilationCache.getPageIds(pinned, from, size,
+                () -> compilationRepository.findIds(pinned, pageRequest));
+
+        Map<Long, CompilationDto> compilations = compilationCache.getAll(compIds, this::loadCompilations);
+        return compIds.stream()
+                .map(compilations::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     // Получение подборки событий по идентификатору
     @Override
     public CompilationDto getCompilation(Long compId) {
-        Compilation compilation = compilationRepository.findById(compId)
-                .orElseThrow(() -> new NotFoundException("Подборка с id=" + compId + " не найдена"));
-        return CompilationMapper.toDto(compilation);
+        CompilationDto compilation = compilationCache.getAll(List.of(compId), this::loadCompilations).get(compId);
+        if (compilation == null) {
+            throw new NotFoundException("Подборка с id=" + compId + " не найдена");
+        }
+        return compilation;
+    }
+
+    // Прогрев кэша закрепленными подборками, которые выводятся на главной странице
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmPinnedCompilations() {
+        if (!warmOnStartup) {
+            return;
+        }
+
+        try {
+            List<Long> pinnedIds = compilationRepository.findIds(true, PageRequest.of(0, warmLimit, Sort.by("id")));
+            compilationCache.getAll(pinnedIds, this::loadCompilations);
+            getCompilations(true, 0, DEFAULT_PAGE_SIZE);
+            log.info("Кэш подборок прогрет: {} закрепленных подборок", pinnedIds.size());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прогреть кэш подборок: {}", e.getMessage());
+        }
+    }
+
+    // Загрузка подборок с событиями; просмотры всех событий запрашиваются одним обращением к сервису статистики
+    private Map<Long, CompilationDto> loadCompilations(Collection<Long> compIds) {
+        List<Compilation> compilations = compilationRepository.findAllById(compIds);
+        Map<Long, Long> views = statsService.getViewsForEvents(compilations.stream()
+                .flatMap(compilation -> eventsOf(compilation).stream())
+                .map(Event::getId)
+                .collect(Collectors.toSet()));
+
+        return compilations.stream()
+                .collect(Collectors.toMap(Compilation::getId, compilation -> {
+                    CompilationDto dto = CompilationMapper.toDto(compilation, views);
+                    dto.setEtag(etagOf(compilation, views));
+                    return dto;
+                }));
+    }
+
+    // ETag подборки: время изменения подборки, входящих событий и их категорий, а также просмотры событий
+    private String etagOf(Compilation compilation, Map<Long, Long> views) {
+        List<String> eventVersions = eventsOf(compilation).stream()
+                .sorted(Comparator.comparing(Event::getId))
+                .map(event -> event.getId() + ":" + event.getUpdatedOn() + ":" + event.getCategory().getUpdatedOn()
+                        + ":" + views.getOrDefault(event.getId(), 0L))
+                .toList();
+        return ETags.of(compilation.getId(), compilation.getUpdatedOn(), eventVersions);
+    }
+
+    // Преобразование подборки в DTO с просмотрами входящих в неё событий
+    private CompilationDto toDtoWithViews(Compilation compilation) {
+        Map<Long, Long> views = statsService.getViewsForEvents(eventsOf(compilation).stream()
+                .map(Event::getId)
+                .collect(Collectors.toSet()));
+        return CompilationMapper.toDto(compilation, views);
+    }
+
+    private Set<Event> eventsOf(Compilation compilation) {
+        return compilation.getEvents() != null ? compilation.getEvents() : Set.of();
     }
-}
\ No newline at end of file
+}
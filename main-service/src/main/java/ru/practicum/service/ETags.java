@@ -0,0 +1,23 @@
+package ru.practicum.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/*
+ Построение строгих ETag для публичных эндпоинтов.
+ Значение вычисляется из версии данных (времени изменения сущностей, идентификаторов и т.п.),
+ а не из тела ответа, поэтому для проверки If-None-Match ответ можно не собирать
+ */
+public class ETags {
+
+    // ETag из частей версии; одинаковые части дают одинаковое значение на любом экземпляре сервиса
+    public static String of(Object... parts) {
+        String version = Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        return "\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -2,6 +2,7 @@ package ru.practicum.service;
 
 import ru.practicum.dto.event.*;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,19 +19,30 @@ public interface EventService {
     // Обновление события пользователем
     EventFullDto updateUserEvent(Long userId, Long eventId, UpdateEventUserRequest updateRequest);
 
-    // Поиск событий по фильтрам для администраторов
+    // Поиск событий по фильтрам для администраторов; при заданном курсоре 'after' параметр 'from' не используется
     List<EventFullDto> getAdminEvents(List<Long> users, List<String> states, List<Long> categories,
-                                      LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size);
+                                      LocalDateTime rangeStart, LocalDateTime rangeEnd, String after,
+                                      int from, int size);
 
     // Обновление события администратором
     EventFullDto updateAdminEvent(Long eventId, UpdateEventAdminRequest updateRequest);
 
-    // Получение опубликованных событий для публичного доступа с фильтрацией
+    // Получение опубликованных событий для публичного доступа с фильтрацией;
+    // при заданном курсоре 'after' параметр 'from' не используется
     List<EventShortDto> getPublicEvents(String text, List<Long> categories, Boolean paid,
                                         LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                        Boolean onlyAvailable, String sort, int from, int size,
+                                        Boolean onlyAvailable, String sort, String after, int from, int size,
                                         String clientIp, String requestUri);
 
     // Получение опубликованного события по идентификатору для публичного доступа
     EventFullDto getPublicEvent(Long eventId, String clientIp, String requestUri);
-}
\ No newline at end of file
+
+    // ETag опубликованного события без загрузки события и обращения к статистике; null, если событие не найдено
+    String getPublicEventETag(Long eventId);
+
+    // Регистрация просмотра события, ответ на который не собирался (304 Not Modified)
+    void savePublicEventHit(String clientIp, String requestUri);
+
+    // Самые просматриваемые за последнее окно опубликованные события
+    List<EventShortDto> getTrendingEvents(Duration window, int size);
+}
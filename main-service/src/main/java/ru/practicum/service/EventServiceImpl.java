@@ -1,6 +1,7 @@
 package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -10,30 +11,53 @@ import ru.practicum.dto.event.*;
 import ru.practicum.exception.ConflictException;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.mapper.CategoryMapper;
 import ru.practicum.mapper.EventMapper;
 import ru.practicum.model.category.Category;
 import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventShortView;
 import ru.practicum.model.event.EventState;
 import ru.practicum.model.event.EventStateAction;
 import ru.practicum.model.user.User;
-import ru.practicum.repository.CategoryRepository;
 import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.OffsetPageRequest;
 import ru.practicum.repository.UserRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class EventServiceImpl implements EventService {
+    // Запас кандидатов для популярных событий: часть URI может принадлежать неопубликованным событиям
+    private static final int TRENDING_CANDIDATES_FACTOR = 2;
 
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
-    private final CategoryRepository categoryRepository;
+    private final CategoryCache categoryCache;
+    private final CompilationCache compilationCache;
     private final StatsService statsService;
 
+    // Полнотекстовый поиск по индексу PostgreSQL; false — поиск подстроки через LIKE (например, для H2)
+    @Value("${events.search.full-text:true}")
+    private boolean fullTextSearch;
+
+    // Максимальное количество подходящих под фильтры событий для сортировки по просмотрам
+    @Value("${events.views-sort.max-candidates:50000}")
+    private int maxViewsSortCandidates;
+
+    // Период, в течение которого ETag события не учитывает новые просмотры
+    @Value("${events.etag.views-ttl-seconds:60}")
+    private long etagViewsTtlSeconds;
+
     /*
      Приватные методы для пользователей
      */
@@ -45,7 +69,8 @@ public class EventServiceImpl implements EventService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь не найден"));
 
-        Category category = categoryRepository.findById(newEventDto.getCategory())
+        Category category = categoryCache.findCategory(newEventDto.getCategory())
+                .map(CategoryMapper::toReference)
                 .orElseThrow(() -> new NotFoundException("Категория не найдена"));
 
         if (newEventDto.getEventDate().isBefore(LocalDateTime.now().plusHours(2))) {
@@ -116,6 +141,7 @@ public class EventServiceImpl implements EventService {
         }
 
         Event updatedEvent = eventRepository.save(event);
+        compilationCache.evictForEventAfterCommit(eventId);
         return EventMapper.toFullDto(updatedEvent);
     }
 
@@ -127,8 +153,9 @@ public class EventServiceImpl implements EventService {
     @Override
     public List<EventFullDto> getAdminEvents(List<Long> users, List<String> states,
                                              List<Long> categories, LocalDateTime rangeStart,
-                                             LocalDateTime rangeEnd, int from, int size) {
-        Pageable pageable = PageRequest.of(from / size, size, Sort.by("id").ascending());
+                                             LocalDateTime rangeEnd, String after, int from, int size) {
+        EventCursor cursor = decodeCursor(after, false);
+        Pageable pageable = OffsetPageRequest.of(cursor == null ? from : 0, size, Sort.by("id").ascending());
 
         List<EventState> eventStates = null;
         if (states != null) {
@@ -138,7 +165,7 @@ public class EventServiceImpl implements EventService {
         }
 
         List<Event> events = eventRepository.findAdminEvents(users, eventStates, categories,
-                rangeStart, rangeEnd, pageable);
+                rangeStart, rangeEnd, cursor == null ? null : cursor.getId(), pageable);
         return events.stream()
                 .map(EventMapper::toFullDto)
                 .collect(Collectors.toList());
@@ -172,6 +199,7 @@ public class EventServiceImpl implements EventService {
 
         updateEventFields(event, updateRequest);
         Event updatedEvent = eventRepository.save(event);
+        compilationCache.evictForEventAfterCommit(eventId);
         return EventMapper.toFullDto(updatedEvent);
     }
 
@@ -183,32 +211,71 @@ public class EventServiceImpl implements EventService {
     @Override
     public List<EventShortDto> getPublicEvents(String text, List<Long> categories, Boolean paid,
                                                LocalDateTime rangeStart, LocalDateTime rangeEnd,
-                                               Boolean onlyAvailable, String sort, int from, int size,
-                                               String clientIp, String requestUri) {
+                                               Boolean onlyAvailable, String sort, String after,
+                                               int from, int size, String clientIp, String requestUri) {
         statsService.saveHit(requestUri, clientIp);
 
         if (rangeStart == null && rangeEnd == null) {
             rangeStart = LocalDateTime.now();
         }
 
-        Pageable pageable;
-        if ("EVENT_DATE".equals(sort)) {
-            pageable = PageRequest.of(from / size, size, Sort.by("eventDate").ascending());
-        } else {
-            pageable = PageRequest.of(from / size, size, Sort.by("id").ascending());
+        boolean byEventDate = "EVENT_DATE".equals(sort);
+        boolean byViews = "VIEWS".equals(sort);
+        if (("RELEVANCE".equals(sort) || byViews) && after != null && !after.isBlank()) {
+            throw new ValidationException("Курсор 'after' не поддерживается для сортировки " + sort);
         }
+        Sort order = byEventDate
+                ? Sort.by("eventDate").ascending().and(Sort.by("id").ascending())
+                : Sort.by("id").ascending();
+        EventCursor cursor = decodeCursor(after, byEventDate);
+        Pageable pageable = OffsetPageRequest.of(cursor == null ? from : 0, size, order);
+        Long afterId = cursor != null && !byEventDate ? cursor.getId() : null;
+        LocalDateTime afterDate = cursor != null && byEventDate ? cursor.getEventDate() : null;
+        Long afterDateId = cursor != null && byEventDate ? cursor.getId() : null;
+
+        boolean hasCategories = categories != null && !categories.isEmpty();
+        List<Long> categoryIds = hasCategories ? categories : List.of(-1L);
+        String query = fullTextSearch ? toPrefixQuery(text) : null;
         String safeText = null;
-        if (text != null) {
+        if (query == null && text != null && !text.isBlank()) {
             safeText = "%" + text.toLowerCase() + "%";
         }
 
-        List<Event> events = eventRepository.findPublicEvents(safeText, categories, paid, rangeStart,
-                rangeEnd, onlyAvailable, pageable);
+        List<EventShortView> events;
+        Map<Long, Long> views = null;
+        if (byViews) {
+            List<Long> candidateIds = query != null
+                    ? eventRepository.searchPublicEventIds(query, hasCategories, categoryIds, paid, rangeStart,
+                    rangeEnd, Boolean.TRUE.equals(onlyAvailable), null, null, null, null,
+                    maxViewsSortCandidates + 1, 0)
+                    : eventRepository.findPublicEventIds(safeText, categories, paid, rangeStart, rangeEnd,
+                    onlyAvailable, PageRequest.of(0, maxViewsSortCandidates + 1));
+            if (candidateIds.size() > maxViewsSortCandidates) {
+                throw new ValidationException("Слишком много событий для сортировки по просмотрам, уточните фильтры");
+            }
+            views = rankByViews(candidateIds, (int) pageable.getOffset(), size);
+            events = findInOrder(new ArrayList<>(views.keySet()));
+        } else if (query != null) {
+            List<Long> ids = eventRepository.searchPublicEventIds(query, hasCategories, categoryIds, paid, rangeStart,
+                    rangeEnd, Boolean.TRUE.equals(onlyAvailable), afterId, afterDate, afterDateId, sort,
+                    pageable.getPageSize(), pageable.getOffset());
+            events = findInOrder(ids);
+        } else {
+            events = eventRepository.findPublicEvents(safeText, categories, paid, rangeStart,
+                    rangeEnd, onlyAvailable, afterId, afterDate, afterDateId, pageable);
+        }
+
+        if (views == null) {
+            views = statsService.getViewsForEvents(events.stream()
+                    .map(EventShortView::id)
+                    .collect(Collectors.toList()));
+        }
+        Map<Long, Long> eventViews = views;
 
         return events.stream()
                 .map(event -> {
                     EventShortDto dto = EventMapper.toShortDto(event);
-                    dto.setViews(statsService.getViewsForEvent(event.getId()));
+                    dto.setViews(eventViews.getOrDefault(event.id(), 0L));
                     return dto;
                 })
                 .collect(Collectors.toList());
@@ -232,6 +299,97 @@ public class EventServiceImpl implements EventService {
         return dto;
     }
 
+    // ETag карточки события: время изменения события и категории плюс номер периода просмотров.
+    // Просмотры меняются без изменения события, поэтому версия обновляется не реже раза за период
+    @Override
+    public String getPublicEventETag(Long eventId) {
+        long viewsEpoch = System.currentTimeMillis() / Math.max(1, etagViewsTtlSeconds * 1000);
+        return eventRepository.findUpdatedOn(eventId, EventState.PUBLISHED)
+                .map(updatedOn -> ETags.of(eventId, updatedOn, viewsEpoch))
+                .orElse(null);
+    }
+
+    @Override
+    public void savePublicEventHit(String clientIp, String requestUri) {
+        statsService.saveHit(requestUri, clientIp);
+    }
+
+    // Популярные события: кандидаты из счетчиков сервиса статистики за окно, затем опубликованные из них
+    @Override
+    public List<EventShortDto> getTrendingEvents(Duration window, int size) {
+        List<Long> ids = new ArrayList<>(statsService.getTrendingEvents(window, size * TRENDING_CANDIDATES_FACTOR)
+                .keySet());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, EventShortView> published = eventRepository.findShortViewsByIdInAndState(ids, EventState.PUBLISHED)
+                .stream()
+                .collect(Collectors.toMap(EventShortView::id, Function.identity()));
+        List<EventShortView> events = ids.stream()
+                .map(published::get)
+                .filter(Objects::nonNull)
+                .limit(size)
+                .toList();
+
+        Map<Long, Long> views = statsService.getViewsForEvents(events.stream()
+                .map(EventShortView::id)
+                .toList());
+        return events.stream()
+                .map(event -> {
+                    EventShortDto dto = EventMapper.toShortDto(event);
+                    dto.setViews(views.getOrDefault(event.id(), 0L));
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // Запрос to_tsquery из слов текста: каждое слово ищется как префикс, все слова должны встретиться
+    private static String toPrefixQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        String query = Arrays.stream(text.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+        return query.isEmpty() ? null : query;
+    }
+
+    // Страница событий по убыванию просмотров: просмотры всех кандидатов запрашиваются одним вызовом,
+    // чтобы при большом числе кандидатов StatsService получил их одним запросом по префиксу URI
+    private Map<Long, Long> rankByViews(List<Long> candidateIds, int from, int size) {
+        ViewsRanking ranking = new ViewsRanking(from, size);
+        Map<Long, Long> views = statsService.getViewsForEvents(candidateIds);
+        candidateIds.forEach(id -> ranking.add(id, views.getOrDefault(id, 0L)));
+        return ranking.page();
+    }
+
+    // Загрузка событий по идентификаторам с сохранением порядка идентификаторов
+    private List<EventShortView> findInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, EventShortView> events = eventRepository.findShortViewsByIdIn(ids).stream()
+                .collect(Collectors.toMap(EventShortView::id, Function.identity()));
+        return ids.stream()
+                .map(events::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Разбор курсора постраничного просмотра; курсор должен соответствовать запрошенной сортировке
+    private EventCursor decodeCursor(String after, boolean byEventDate) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        EventCursor cursor = EventCursor.decode(after);
+        if (cursor.isByEventDate() != byEventDate) {
+            throw new ValidationException("Курсор 'after' не соответствует сортировке");
+        }
+        return cursor;
+    }
+
     // Проверка наличия изменений
     private boolean hasChanges(Event event, UpdateEventUserRequest request) {
         return (request.getAnnotation() != null && !request.getAnnotation().equals(event.getAnnotation())) ||
@@ -15,11 +15,14 @@ import ru.practicum.model.event.Event;
 import ru.practicum.model.event.EventState;
 import ru.practicum.model.request.ParticipationRequest;
 import ru.practicum.model.request.RequestStatus;
+import ru.practicum.model.request.RequestStatusChange;
 import ru.practicum.model.user.User;
 import ru.practicum.repository.EventRepository;
 import ru.practicum.repository.ParticipationRequestRepository;
 import ru.practicum.repository.UserRepository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,10 +30,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class RequestServiceImpl implements RequestService {
+    // Количество попыток занять места при параллельном подтверждении заявок
+    private static final int RESERVE_ATTEMPTS = 3;
+    // Количество идентификаторов в одном UPDATE: параметры запроса PostgreSQL ограничены 32767
+    private static final int IDS_PER_UPDATE = 1000;
 
     private final ParticipationRequestRepository requestRepository;
     private final UserRepository userRepository;
     private final EventRepository eventRepository;
+    private final CompilationCache compilationCache;
 
     /*
      Методы для работы с заявками на участие в событиях
@@ -70,29 +78,27 @@ public class RequestServiceImpl implements RequestService {
             throw new ConflictException("Нельзя участвовать в неопубликованном событии");
         }
 
-        // Проверка лимита участников
-        if (event.getParticipantLimit() > 0) {
-            Long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
-            if (confirmedRequests >= event.getParticipantLimit()) {
+        RequestStatus status = event.getRequestModeration() && event.getParticipantLimit() > 0 ?
+                RequestStatus.PENDING : RequestStatus.CONFIRMED;
+
+        // Проверка лимита участников: место для подтверждаемой заявки занимается атомарно,
+        // а для ожидающей заявки количество подтвержденных читается из базы, а не из загруженного события
+        if (status == RequestStatus.CONFIRMED) {
+            if (eventRepository.incrementConfirmedRequests(eventId, 1) == 0) {
                 throw new ConflictException("Достигнут лимит участников");
             }
+            compilationCache.evictForEventAfterCommit(eventId);
+        } else if (eventRepository.findConfirmedRequests(eventId) >= event.getParticipantLimit()) {
+            throw new ConflictException("Достигнут лимит участников");
         }
 
         ParticipationRequest request = ParticipationRequest.builder()
                 .requester(user)
                 .event(event)
-                .status(event.getRequestModeration() && event.getParticipantLimit() > 0 ?
-                        RequestStatus.PENDING : RequestStatus.CONFIRMED)
+                .status(status)
                 .build();
 
         ParticipationRequest savedRequest = requestRepository.save(request);
-
-        // Если автоматическое подтверждение - увеличиваем счетчик подтвержденных заявок
-        if (savedRequest.getStatus() == RequestStatus.CONFIRMED) {
-            event.setConfirmedRequests(event.getConfirmedRequests() + 1);
-            eventRepository.save(event);
-        }
-
         return RequestMapper.toDto(savedRequest);
     }
 
@@ -118,16 +124,15 @@ public class RequestServiceImpl implements RequestService {
             throw new NotFoundException("Запрос не найден для текущего пользователя");
         }
 
-        request.setStatus(RequestStatus.CANCELED);
-        ParticipationRequest updatedRequest = requestRepository.save(request);
-
-        // Если запрос был подтвержден, уменьшаем счетчик
+        // Если запрос был подтвержден, освобождаем место
         if (request.getStatus() == RequestStatus.CONFIRMED) {
-            Event event = request.getEvent();
-            event.setConfirmedRequests(event.getConfirmedRequests() - 1);
-            eventRepository.save(event);
+            eventRepository.decrementConfirmedRequests(request.getEvent().getId(), 1);
+            compilationCache.evictForEventAfterCommit(request.getEvent().getId());
         }
 
+        request.setStatus(RequestStatus.CANCELED);
+        ParticipationRequest updatedRequest = requestRepository.save(request);
+
         return RequestMapper.toDto(updatedRequest);
     }
 
@@ -158,51 +163,80 @@ public class RequestServiceImpl implements RequestService {
             throw new NotFoundException("Пользователь не является инициатором этого события");
         }
 
-        List<ParticipationRequest> requests = requestRepository.findByIdIn(updateRequest.getRequestIds());
-
-        // Проверка, что все запросы находятся в состоянии ожидания
-        if (requests.stream().anyMatch(req -> req.getStatus() != RequestStatus.PENDING)) {
-            throw new ConflictException("Запрос должен иметь статус PENDING");
-        }
-
+        List<Long> requestIds = updateRequest.getRequestIds() == null ? List.of()
+                : updateRequest.getRequestIds().stream().distinct().toList();
         EventRequestStatusUpdateResult result = new EventRequestStatusUpdateResult();
+        if (requestIds.isEmpty()) {
+            return result;
+        }
 
         if (updateRequest.getStatus() == RequestUpdateStatus.CONFIRMED) {
-            // Подтверждение заявок
-            Long confirmedCount = requestRepository.countByEventIdAndStatus(eventId, RequestStatus.CONFIRMED);
-            int availableSlots = event.getParticipantLimit() - confirmedCount.intValue();
-
-            if (availableSlots <= 0) {
-                throw new ConflictException("Достигнут лимит участников");
+            // Подтверждение заявок в пределах свободных мест, остальные отклоняются
+            int availableSlots = reserveSlots(event, requestIds.size());
+            List<RequestStatusChange> confirmed = changePendingStatus(eventId,
+                    requestIds.subList(0, availableSlots), RequestStatus.CONFIRMED);
+            List<RequestStatusChange> rejected = changePendingStatus(eventId,
+                    requestIds.subList(availableSlots, requestIds.size()), RequestStatus.REJECTED);
+            if (confirmed.size() + rejected.size() != requestIds.size()) {
+                throw new ConflictException("Запрос должен иметь статус PENDING");
             }
 
-            for (ParticipationRequest request : requests) {
-                if (availableSlots > 0) {
-                    request.setStatus(RequestStatus.CONFIRMED);
-                    requestRepository.save(request);
-                    result.getConfirmedRequests().add(RequestMapper.toDto(request));
-                    availableSlots--;
-
-                    // Обновляем счетчик подтвержденных заявок
-                    event.setConfirmedRequests(event.getConfirmedRequests() + 1);
-                } else {
-                    request.setStatus(RequestStatus.REJECTED);
-                    requestRepository.save(request);
-                    result.getRejectedRequests().add(RequestMapper.toDto(request));
-                }
+            // При исчерпании лимита все оставшиеся ожидающие заявки события отклоняются
+            if (event.getParticipantLimit() != null && event.getParticipantLimit() > 0
+                    && eventRepository.findConfirmedRequests(eventId) >= event.getParticipantLimit()) {
+                requestRepository.rejectPendingRequests(eventId);
             }
 
-            eventRepository.save(event);
-
+            if (!confirmed.isEmpty()) {
+                compilationCache.evictForEventAfterCommit(eventId);
+            }
+            confirmed.forEach(change -> result.getConfirmedRequests().add(RequestMapper.toDto(change)));
+            rejected.forEach(change -> result.getRejectedRequests().add(RequestMapper.toDto(change)));
         } else if (updateRequest.getStatus() == RequestUpdateStatus.REJECTED) {
             // Отклонение заявок
-            for (ParticipationRequest request : requests) {
-                request.setStatus(RequestStatus.REJECTED);
-                requestRepository.save(request);
-                result.getRejectedRequests().add(RequestMapper.toDto(request));
+            List<RequestStatusChange> rejected = changePendingStatus(eventId, requestIds, RequestStatus.REJECTED);
+            if (rejected.size() != requestIds.size()) {
+                throw new ConflictException("Запрос должен иметь статус PENDING");
             }
+            rejected.forEach(change -> result.getRejectedRequests().add(RequestMapper.toDto(change)));
         }
 
         return result;
     }
-}
\ No newline at end of file
+
+    // Атомарно занимает до requested мест в событии и возвращает количество занятых мест
+    private int reserveSlots(Event event, int requested) {
+        if (requested == 0) {
+            return 0;
+        }
+        Integer limit = event.getParticipantLimit();
+        if (limit == null || limit == 0) {
+            eventRepository.incrementConfirmedRequests(event.getId(), requested);
+            return requested;
+        }
+
+        // Количество свободных мест может уменьшиться между чтением и UPDATE, тогда попытка повторяется
+        for (int attempt = 0; attempt < RESERVE_ATTEMPTS; attempt++) {
+            int availableSlots = limit - eventRepository.findConfirmedRequests(event.getId());
+            if (availableSlots <= 0) {
+                throw new ConflictException("Достигнут лимит участников");
+            }
+            int slots = Math.min(availableSlots, requested);
+            if (eventRepository.incrementConfirmedRequests(event.getId(), slots) == 1) {
+                return slots;
+            }
+        }
+        throw new ConflictException("Не удалось подтвердить заявки из-за параллельных изменений, повторите запрос");
+    }
+
+    // Изменение статуса ожидающих заявок события; результат упорядочен по идентификатору заявки
+    private List<RequestStatusChange> changePendingStatus(Long eventId, List<Long> requestIds, RequestStatus status) {
+        List<RequestStatusChange> changes = new ArrayList<>();
+        for (int from = 0; from < requestIds.size(); from += IDS_PER_UPDATE) {
+            List<Long> chunk = requestIds.subList(from, Math.min(from + IDS_PER_UPDATE, requestIds.size()));
+            changes.addAll(requestRepository.updatePendingStatus(eventId, chunk, status.name()));
+        }
+        changes.sort(Comparator.comparing(RequestStatusChange::getId));
+        return changes;
+    }
+}
@@ -1,28 +1,78 @@
 package ru.practicum.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.EndpointHitDto;
 import ru.practicum.StatsClient;
+import ru.practicum.StatsClientException;
 import ru.practicum.ViewStatsDto;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class StatsService {
+public class StatsService implements MeterBinder {
+    private static final String EVENT_URI_PREFIX = "/events/";
+    // Количество URI в одном запросе к сервису статистики: список передается в строке запроса
+    private static final int URIS_PER_REQUEST = 200;
+
     private final StatsClient statsClient;
 
     @Value("${app.name:ewm-main-service}")
     private String appName;
 
+    // Приближенный подсчет уникальных просмотров по скетчам сервиса статистики
+    @Value("${stats.views.approximate:false}")
+    private boolean approximateViews;
+
+    // Начиная с этого количества событий просмотры запрашиваются одним запросом по префиксу /events/
+    @Value("${stats.views.prefix-threshold:1000}")
+    private int prefixThreshold;
+
+    // Размер локального кэша последних известных просмотров
+    @Value("${stats.views.fallback.max-size:100000}")
+    private long fallbackMaxSize;
+
+    /*
+     Последние полученные от сервиса статистики просмотры событий.
+     Пока сервис статистики недоступен (ошибка или открытый выключатель клиента), просмотры берутся отсюда:
+     публичные запросы получают немного устаревшие значения вместо ошибки.
+     Значения обновляются при каждом успешном запросе, в том числе пробном после открытия выключателя
+     */
+    private Cache<Long, Long> lastKnownViews;
+    private final LongAdder fallbackViews = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        lastKnownViews = Caffeine.newBuilder()
+                .maximumSize(fallbackMaxSize)
+                .build();
+    }
+
     /*
      Методы для работы со статистикой
      */
 
-    // Сохранение информации о запросе к эндпоинту
+    // Сохранение информации о запросе к эндпоинту (асинхронно, через очередь клиента статистики)
     public void saveHit(String uri, String ip) {
         EndpointHitDto hit = EndpointHitDto.builder()
                 .app(appName)
@@ -30,7 +80,7 @@ public class StatsService {
                 .ip(ip)
                 .timestamp(LocalDateTime.now())
                 .build();
-        statsClient.saveHit(hit);
+        statsClient.enqueueHit(hit);
     }
 
     // Получение статистики по посещениям за указанный период
@@ -40,11 +90,118 @@ public class StatsService {
 
     // Получение количества просмотров для события
     public Long getViewsForEvent(Long eventId) {
-        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        return getViewsForEvents(List.of(eventId)).getOrDefault(eventId, 0L);
+    }
+
+    // Получение количества просмотров для набора событий; большие наборы запрашиваются частями,
+    // а очень большие — одним запросом по префиксу URI с отбором нужных событий на нашей стороне
+    public Map<Long, Long> getViewsForEvents(Collection<Long> eventIds) {
+        Map<Long, Long> views = new HashMap<>();
+        if (eventIds == null || eventIds.isEmpty()) {
+            return views;
+        }
+
+        List<Long> ids = eventIds.stream()
+                .distinct()
+                .toList();
+
         LocalDateTime end = LocalDateTime.now();
-        List<String> uris = List.of("/events/" + eventId);
+        LocalDateTime start = end.minusYears(1);
+
+        if (ids.size() > prefixThreshold) {
+            putViews(views, ids, () -> fetchViewsByPrefix(ids, start, end));
+            return views;
+        }
+
+        for (int from = 0; from < ids.size(); from += URIS_PER_REQUEST) {
+            List<Long> chunk = ids.subList(from, Math.min(from + URIS_PER_REQUEST, ids.size()));
+            putViews(views, chunk, () -> fetchViews(chunk, start, end));
+        }
+        return views;
+    }
+
+    // Идентификаторы самых просматриваемых за окно событий с количеством просмотров, по убыванию;
+    // при недоступности сервиса статистики — пустой результат
+    public Map<Long, Long> getTrendingEvents(Duration window, int limit) {
+        Map<Long, Long> trending = new LinkedHashMap<>();
+        try {
+            for (ViewStatsDto stat : statsClient.getTop(window, limit, EVENT_URI_PREFIX)) {
+                Long eventId = parseEventId(stat.getUri());
+                if (eventId != null) {
+                    trending.merge(eventId, stat.getHits(), Long::sum);
+                }
+            }
+        } catch (StatsClientException e) {
+            log.debug("Популярные события недоступны: {}", e.getMessage());
+        }
+        return trending;
+    }
+
+    // Просмотры событий из сервиса статистики, а при его недоступности — из локального кэша
+    private void putViews(Map<Long, Long> views, List<Long> eventIds, Supplier<Map<Long, Long>> fetcher) {
+        try {
+            Map<Long, Long> fetched = fetcher.get();
+            lastKnownViews.putAll(fetched);
+            views.putAll(fetched);
+        } catch (StatsClientException e) {
+            log.debug("Просмотры {} событий взяты из локального кэша: {}", eventIds.size(), e.getMessage());
+            fallbackViews.add(eventIds.size());
+            for (Long eventId : eventIds) {
+                Long lastKnown = lastKnownViews.getIfPresent(eventId);
+                views.put(eventId, lastKnown != null ? lastKnown : 0L);
+            }
+        }
+    }
+
+    // Запрос просмотров части событий; события без просмотров получают 0
+    private Map<Long, Long> fetchViews(List<Long> eventIds, LocalDateTime start, LocalDateTime end) {
+        List<String> uris = eventIds.stream()
+                .map(id -> EVENT_URI_PREFIX + id)
+                .toList();
+
+        return collectViews(statsClient.getStats(start, end, uris, true, approximateViews), eventIds);
+    }
+
+    // Запрос просмотров всех событий по префиксу URI; в ответе остаются только запрошенные события
+    private Map<Long, Long> fetchViewsByPrefix(List<Long> eventIds, LocalDateTime start, LocalDateTime end) {
+        List<ViewStatsDto> stats = statsClient.getStatsByPrefix(start, end, EVENT_URI_PREFIX, true, approximateViews);
+        return collectViews(stats, eventIds);
+    }
+
+    private Map<Long, Long> collectViews(List<ViewStatsDto> stats, List<Long> eventIds) {
+        Set<Long> requested = Set.copyOf(eventIds);
+        Map<Long, Long> views = new HashMap<>();
+        for (ViewStatsDto stat : stats) {
+            Long eventId = parseEventId(stat.getUri());
+            if (eventId != null && requested.contains(eventId)) {
+                views.merge(eventId, stat.getHits(), Long::sum);
+            }
+        }
+        for (Long eventId : eventIds) {
+            views.putIfAbsent(eventId, 0L);
+        }
+        return views;
+    }
+
+    // Метрики резервного источника просмотров, доступные через actuator
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stats.views.fallback", fallbackViews, LongAdder::sum)
+                .description("Просмотры событий, выданные из локального кэша при недоступности сервиса статистики")
+                .register(registry);
+        Gauge.builder("stats.views.fallback.cache.size", lastKnownViews, Cache::estimatedSize)
+                .register(registry);
+    }
 
-        List<ViewStatsDto> stats = getStats(start, end, uris, true);
-        return stats.isEmpty() ? 0L : stats.getFirst().getHits();
+    // Извлечение идентификатора события из URI вида /events/{id}
+    private Long parseEventId(String uri) {
+        if (uri == null || !uri.startsWith(EVENT_URI_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(uri.substring(EVENT_URI_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
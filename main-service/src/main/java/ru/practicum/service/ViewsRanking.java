@@ -0,0 +1,51 @@
+package ru.practicum.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/*
+ Выбор страницы событий, упорядоченных по убыванию просмотров (при равенстве — по id).
+ Просмотры добавляются частями, а в памяти хранятся только from + size лучших событий,
+ поэтому затраты ограничены O(n log(from + size)) независимо от числа кандидатов.
+ */
+class ViewsRanking {
+    private static final Comparator<Map.Entry<Long, Long>> BY_VIEWS_DESC =
+            Comparator.<Map.Entry<Long, Long>>comparingLong(Map.Entry::getValue).reversed()
+                    .thenComparing(Map.Entry::getKey);
+
+    private final int from;
+    private final int size;
+    // Худшее из отобранных событий находится в голове очереди
+    private final PriorityQueue<Map.Entry<Long, Long>> top;
+
+    ViewsRanking(int from, int size) {
+        this.from = from;
+        this.size = size;
+        this.top = new PriorityQueue<>(BY_VIEWS_DESC.reversed());
+    }
+
+    void add(Long eventId, long views) {
+        Map.Entry<Long, Long> entry = Map.entry(eventId, views);
+        if (top.size() < from + size) {
+            top.add(entry);
+        } else if (BY_VIEWS_DESC.compare(entry, top.peek()) < 0) {
+            top.poll();
+            top.add(entry);
+        }
+    }
+
+    // Страница в порядке убывания просмотров: идентификатор события -> количество просмотров
+    Map<Long, Long> page() {
+        List<Map.Entry<Long, Long>> sorted = new ArrayList<>(top);
+        sorted.sort(BY_VIEWS_DESC);
+        Map<Long, Long> page = new LinkedHashMap<>();
+        for (int i = from; i < sorted.size(); i++) {
+            page.put(sorted.get(i).getKey(), sorted.get(i).getValue());
+        }
+        return page;
+    }
+}
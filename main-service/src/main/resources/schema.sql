@@ -17,8 +17,9 @@ CREATE TABLE IF NOT EXISTS users (
 );
 
 CREATE TABLE IF NOT EXISTS categories (
-    id   BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    name VARCHAR(255) NOT NULL,
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name       VARCHAR(255) NOT NULL,
+    updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT pk_category PRIMARY KEY (id),
     CONSTRAINT uq_category_name UNIQUE (name)
 );
@@ -40,11 +41,23 @@ CREATE TABLE IF NOT EXISTS events (
     request_moderation BOOLEAN,
     state              VARCHAR(32),
     title              VARCHAR(128) NOT NULL,
+    updated_on         TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    search_vector      TSVECTOR GENERATED ALWAYS AS (
+                           setweight(to_tsvector('simple', COALESCE(title, '')), 'A')
+                           || setweight(to_tsvector('simple', COALESCE(annotation, '')), 'B')
+                           || setweight(to_tsvector('simple', COALESCE(description, '')), 'C')
+                       ) STORED,
     CONSTRAINT pk_event PRIMARY KEY (id),
     CONSTRAINT fk_event_category FOREIGN KEY (category_id) REFERENCES categories (id),
     CONSTRAINT fk_event_initiator FOREIGN KEY (initiator_id) REFERENCES users (id)
 );
 
+-- Постраничный просмотр по ключу (event_date, id) при сортировке по дате события
+CREATE INDEX IF NOT EXISTS ix_events_event_date_id ON events (event_date, id);
+
+-- Полнотекстовый поиск по названию, аннотации и описанию
+CREATE INDEX IF NOT EXISTS ix_events_search_vector ON events USING GIN (search_vector);
+
 CREATE TABLE IF NOT EXISTS participation_requests (
     id           BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     created      TIMESTAMP WITHOUT TIME ZONE,
@@ -58,9 +71,10 @@ CREATE TABLE IF NOT EXISTS participation_requests (
 );
 
 CREATE TABLE IF NOT EXISTS compilations (
-    id     BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    pinned BOOLEAN NOT NULL,
-    title  VARCHAR(50) NOT NULL,
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    pinned     BOOLEAN NOT NULL,
+    title      VARCHAR(50) NOT NULL,
+    updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT pk_compilation PRIMARY KEY (id)
 );
 
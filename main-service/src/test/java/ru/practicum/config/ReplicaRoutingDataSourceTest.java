@@ -0,0 +1,147 @@
+package ru.practicum.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Маршрутизация между двумя базами H2: основной и репликой, каждая возвращает свое имя из таблицы marker
+class ReplicaRoutingDataSourceTest {
+    private static final Duration READ_YOUR_WRITES = Duration.ofSeconds(5);
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        new JdbcTemplate(replica).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void readOnlyTransactionUsesReplica() {
+        Routing routing = new Routing(READ_YOUR_WRITES);
+
+        assertThat(routing.read("/events/1")).isEqualTo("replica");
+        assertThat(routing.read(null)).isEqualTo("replica");
+    }
+
+    @Test
+    void writeTransactionUsesPrimary() {
+        Routing routing = new Routing(READ_YOUR_WRITES);
+
+        assertThat(routing.write("/users/1/events", false)).isEqualTo("primary");
+    }
+
+    @Test
+    void userReadsFromPrimaryAfterOwnCommittedWrite() {
+        Routing routing = new Routing(READ_YOUR_WRITES);
+
+        routing.write("/users/1/events", false);
+
+        assertThat(routing.read("/users/1/events/5")).isEqualTo("primary");
+        // Другой пользователь и публичные запросы по-прежнему читают с реплики
+        assertThat(routing.read("/users/2/events")).isEqualTo("replica");
+        assertThat(routing.read("/events/5")).isEqualTo("replica");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotPinUser() {
+        Routing routing = new Routing(READ_YOUR_WRITES);
+
+        routing.write("/users/1/requests", true);
+
+        assertThat(routing.read("/users/1/requests")).isEqualTo("replica");
+    }
+
+    @Test
+    void adminWritePinsOnlyAdminRequests() {
+        Routing routing = new Routing(READ_YOUR_WRITES);
+
+        routing.write("/admin/categories", false);
+
+        assertThat(routing.read("/admin/events")).isEqualTo("primary");
+        assertThat(routing.read("/users/1/events")).isEqualTo("replica");
+        assertThat(routing.read("/categories")).isEqualTo("replica");
+    }
+
+    @Test
+    void pinExpiresAfterReadYourWritesWindow() throws Exception {
+        Routing routing = new Routing(Duration.ofMillis(100));
+
+        routing.write("/users/1/events", false);
+        assertThat(routing.read("/users/1/events")).isEqualTo("primary");
+
+        Thread.sleep(300);
+        assertThat(routing.read("/users/1/events")).isEqualTo("replica");
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO marker (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    // Источник данных в той же обвязке, что и в DataSourceConfig: ленивый прокси и менеджер транзакций
+    private class Routing {
+        private final JdbcTemplate jdbcTemplate;
+        private final DataSourceTransactionManager transactionManager;
+
+        Routing(Duration readYourWrites) {
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica), readYourWrites);
+            routing.afterPropertiesSet();
+            DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            transactionManager = new DataSourceTransactionManager(dataSource);
+        }
+
+        // Имя базы, с которой читала транзакция только для чтения в запросе по пути path (null — вне запроса)
+        String read(String path) {
+            return inRequest(path, true, false);
+        }
+
+        // Имя базы пишущей транзакции; rollback — откатить ее вместо фиксации
+        String write(String path, boolean rollback) {
+            return inRequest(path, false, rollback);
+        }
+
+        private String inRequest(String path, boolean readOnly, boolean rollback) {
+            if (path != null) {
+                RequestContextHolder.setRequestAttributes(
+                        new ServletRequestAttributes(new MockHttpServletRequest("GET", path)));
+            } else {
+                RequestContextHolder.resetRequestAttributes();
+            }
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(readOnly);
+            return transaction.execute(status -> {
+                if (rollback) {
+                    status.setRollbackOnly();
+                }
+                return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+            });
+        }
+    }
+}
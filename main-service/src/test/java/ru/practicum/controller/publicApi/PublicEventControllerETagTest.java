@@ -0,0 +1,114 @@
+package ru.practicum.controller.publicApi;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.PostgresTestSupport;
+import ru.practicum.model.category.Category;
+import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventState;
+import ru.practicum.model.event.Location;
+import ru.practicum.model.user.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+import ru.practicum.service.StatsService;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Условный запрос карточки события: 304 по совпадению ETag и учет просмотра в обоих случаях
+@SpringBootTest
+@AutoConfigureMockMvc
+@EnabledIf("ru.practicum.PostgresTestSupport#isDatabaseAvailable")
+class PublicEventControllerETagTest extends PostgresTestSupport {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @MockBean
+    private StatsService statsService;
+
+    private Event event;
+
+    @BeforeEach
+    void setUp() {
+        when(statsService.getViewsForEvent(anyLong())).thenReturn(0L);
+        String name = "user-" + UUID.randomUUID();
+        User initiator = userRepository.save(User.builder().name(name).email(name + "@example.com").build());
+        Category category = categoryRepository.save(Category.builder().name("cat-" + UUID.randomUUID()).build());
+        event = eventRepository.save(Event.builder()
+                .annotation("Аннотация события для проверки условных запросов")
+                .description("Описание события для проверки условных запросов")
+                .title("Событие с ETag")
+                .category(category)
+                .initiator(initiator)
+                .eventDate(LocalDateTime.now().plusDays(7))
+                .location(new Location(55.75f, 37.62f))
+                .paid(false)
+                .participantLimit(0)
+                .requestModeration(false)
+                .confirmedRequests(0)
+                .state(EventState.PUBLISHED)
+                .publishedOn(LocalDateTime.now())
+                .build());
+    }
+
+    @Test
+    void matchingETagReturnsNotModifiedAndRecordsView() throws Exception {
+        String uri = "/events/" + event.getId();
+        String etag = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        verify(statsService, times(2)).saveHit(eq(uri), anyString());
+        verify(statsService, times(1)).getViewsForEvent(event.getId());
+    }
+
+    @Test
+    void changedEventReturnsNewETag() throws Exception {
+        String uri = "/events/" + event.getId();
+        String etag = mockMvc.perform(get(uri))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        event.setTitle("Событие с новым названием");
+        eventRepository.save(event);
+
+        String newEtag = mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newEtag).isNotEqualTo(etag);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import ru.practicum.PostgresTestSupport;
+import ru.practicum.dto.event.EventFullDto;
+import ru.practicum.mapper.EventMapper;
+import ru.practicum.model.category.Category;
+import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventState;
+import ru.practicum.model.event.Location;
+import ru.practicum.model.user.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Списки событий загружаются одним запросом вместе с категорией и инициатором независимо от размера списка
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIf("ru.practicum.PostgresTestSupport#isDatabaseAvailable")
+class EventRepositoryQueryCountTest extends PostgresTestSupport {
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50})
+    void adminSearchUsesOneQueryForAnyNumberOfEvents(int count) {
+        List<Event> events = createEvents(count);
+        List<Long> initiators = events.stream().map(event -> event.getInitiator().getId()).toList();
+        statistics.clear();
+
+        List<EventFullDto> dtos = eventRepository.findAdminEvents(initiators, null, null, null, null, null,
+                        PageRequest.of(0, count)).stream()
+                .map(EventMapper::toFullDto)
+                .toList();
+
+        assertThat(dtos).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50})
+    void findByIdInUsesOneQueryForAnyNumberOfEvents(int count) {
+        List<Long> ids = createEvents(count).stream().map(Event::getId).toList();
+        statistics.clear();
+
+        List<EventFullDto> dtos = eventRepository.findByIdIn(ids).stream()
+                .map(EventMapper::toFullDto)
+                .toList();
+
+        assertThat(dtos).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // У каждого события свои категория и инициатор: без графа загрузки это дало бы 2N дополнительных запросов
+    private List<Event> createEvents(int count) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "user-" + UUID.randomUUID();
+            User initiator = entityManager.persist(User.builder().name(name).email(name + "@example.com").build());
+            Category category = entityManager.persist(Category.builder().name("cat-" + UUID.randomUUID()).build());
+            events.add(entityManager.persist(Event.builder()
+                    .annotation("Аннотация события для подсчета запросов")
+                    .description("Описание события для подсчета запросов")
+                    .title("Событие " + i)
+                    .category(category)
+                    .initiator(initiator)
+                    .eventDate(LocalDateTime.now().plusDays(7))
+                    .location(new Location(55.75f, 37.62f))
+                    .paid(false)
+                    .participantLimit(0)
+                    .requestModeration(false)
+                    .confirmedRequests(0)
+                    .state(EventState.PUBLISHED)
+                    .publishedOn(LocalDateTime.now())
+                    .build()));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return events;
+    }
+}
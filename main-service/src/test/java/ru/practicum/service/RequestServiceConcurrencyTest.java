@@ -0,0 +1,173 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.PostgresTestSupport;
+import ru.practicum.dto.request.EventRequestStatusUpdateRequest;
+import ru.practicum.dto.request.RequestUpdateStatus;
+import ru.practicum.exception.ConflictException;
+import ru.practicum.model.category.Category;
+import ru.practicum.model.event.Event;
+import ru.practicum.model.event.EventState;
+import ru.practicum.model.event.Location;
+import ru.practicum.model.request.RequestStatus;
+import ru.practicum.model.user.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.ParticipationRequestRepository;
+import ru.practicum.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Лимит участников не превышается при параллельных заявках и подтверждениях
+@SpringBootTest
+@EnabledIf("ru.practicum.PostgresTestSupport#isDatabaseAvailable")
+class RequestServiceConcurrencyTest extends PostgresTestSupport {
+    private static final int PARTICIPANT_LIMIT = 5;
+    private static final int REQUESTERS = 40;
+
+    @Autowired
+    private RequestService requestService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ParticipationRequestRepository requestRepository;
+
+    @Test
+    void parallelConfirmationsDoNotExceedParticipantLimit() throws Exception {
+        User initiator = createUser();
+        Event event = createEvent(initiator, true);
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = 0; i < REQUESTERS; i++) {
+            requestIds.add(requestService.createRequest(createUser().getId(), event.getId()).getId());
+        }
+
+        AtomicInteger conflicts = new AtomicInteger();
+        runConcurrently(requestIds.stream()
+                .map(requestId -> (Callable<Void>) () -> {
+                    try {
+                        requestService.updateRequestStatus(initiator.getId(), event.getId(),
+                                new EventRequestStatusUpdateRequest(List.of(requestId), RequestUpdateStatus.CONFIRMED));
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                })
+                .toList());
+
+        assertThat(eventRepository.findConfirmedRequests(event.getId())).isEqualTo(PARTICIPANT_LIMIT);
+        assertThat(requestRepository.countByEventIdAndStatus(event.getId(), RequestStatus.CONFIRMED))
+                .isEqualTo(PARTICIPANT_LIMIT);
+        assertThat(conflicts.get()).isGreaterThan(0);
+    }
+
+    @Test
+    void parallelRequestsWithoutModerationDoNotExceedParticipantLimit() throws Exception {
+        Event event = createEvent(createUser(), false);
+        List<User> requesters = new ArrayList<>();
+        for (int i = 0; i < REQUESTERS; i++) {
+            requesters.add(createUser());
+        }
+
+        AtomicInteger conflicts = new AtomicInteger();
+        runConcurrently(requesters.stream()
+                .map(requester -> (Callable<Void>) () -> {
+                    try {
+                        requestService.createRequest(requester.getId(), event.getId());
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                    return null;
+                })
+                .toList());
+
+        assertThat(eventRepository.findConfirmedRequests(event.getId())).isEqualTo(PARTICIPANT_LIMIT);
+        assertThat(requestRepository.countByEventIdAndStatus(event.getId(), RequestStatus.CONFIRMED))
+                .isEqualTo(PARTICIPANT_LIMIT);
+        assertThat(conflicts.get()).isEqualTo(REQUESTERS - PARTICIPANT_LIMIT);
+    }
+
+    @Test
+    void moderatedRequestIsRejectedWhenLimitIsReached() {
+        User initiator = createUser();
+        Event event = createEvent(initiator, true);
+        List<Long> requestIds = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANT_LIMIT; i++) {
+            requestIds.add(requestService.createRequest(createUser().getId(), event.getId()).getId());
+        }
+        requestService.updateRequestStatus(initiator.getId(), event.getId(),
+                new EventRequestStatusUpdateRequest(requestIds, RequestUpdateStatus.CONFIRMED));
+
+        Long requesterId = createUser().getId();
+        assertThatThrownBy(() -> requestService.createRequest(requesterId, event.getId()))
+                .isInstanceOf(ConflictException.class);
+    }
+
+    // Все задачи стартуют одновременно после общего сигнала
+    private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private User createUser() {
+        String name = "user-" + UUID.randomUUID();
+        return userRepository.save(User.builder().name(name).email(name + "@example.com").build());
+    }
+
+    private Event createEvent(User initiator, boolean requestModeration) {
+        Category category = categoryRepository.save(Category.builder().name("cat-" + UUID.randomUUID()).build());
+        return eventRepository.save(Event.builder()
+                .annotation("Аннотация события для проверки лимита участников")
+                .description("Описание события для проверки лимита участников")
+                .title("Событие с лимитом")
+                .category(category)
+                .initiator(initiator)
+                .eventDate(LocalDateTime.now().plusDays(7))
+                .location(new Location(55.75f, 37.62f))
+                .paid(false)
+                .participantLimit(PARTICIPANT_LIMIT)
+                .requestModeration(requestModeration)
+                .confirmedRequests(0)
+                .state(EventState.PUBLISHED)
+                .publishedOn(LocalDateTime.now())
+                .build());
+    }
+}
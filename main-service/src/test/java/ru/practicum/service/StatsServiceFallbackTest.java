@@ -0,0 +1,102 @@
+package ru.practicum.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.CircuitBreakerSettings;
+import ru.practicum.CircuitState;
+import ru.practicum.HttpTransportSettings;
+import ru.practicum.StatsClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Просмотры из локального кэша, пока сервис статистики недоступен, и обновление после его восстановления
+class StatsServiceFallbackTest {
+    private static final int FAILURE_THRESHOLD = 2;
+    private static final long OPEN_DURATION_MS = 200;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String body = "[]";
+
+    private HttpServer server;
+    private StatsClient statsClient;
+    private StatsService statsService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        statsClient = new StatsClient("http://localhost:" + server.getAddress().getPort(), null,
+                HttpTransportSettings.builder().build(),
+                CircuitBreakerSettings.builder()
+                        .failureThreshold(FAILURE_THRESHOLD)
+                        .openDurationMs(OPEN_DURATION_MS)
+                        .build());
+        statsService = new StatsService(statsClient);
+        ReflectionTestUtils.setField(statsService, "prefixThreshold", 1000);
+        ReflectionTestUtils.setField(statsService, "fallbackMaxSize", 100L);
+        statsService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        statsClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    void servesLastKnownViewsWhileStatsServerIsDown() throws Exception {
+        respond(200, views(7));
+        assertThat(statsService.getViewsForEvents(List.of(1L, 2L))).isEqualTo(Map.of(1L, 7L, 2L, 0L));
+
+        // Ошибки сервера: просмотры из кэша, после FAILURE_THRESHOLD ошибок выключатель открывается
+        respond(500, "{}");
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThat(statsService.getViewsForEvents(List.of(1L, 2L))).isEqualTo(Map.of(1L, 7L, 2L, 0L));
+        }
+        assertThat(statsClient.getCircuitState()).isEqualTo(CircuitState.OPEN);
+
+        // Открытый выключатель: ответ из кэша без обращения к серверу
+        int requestsBefore = requests.get();
+        assertThat(statsService.getViewsForEvent(1L)).isEqualTo(7L);
+        assertThat(requests.get()).isEqualTo(requestsBefore);
+
+        // Пробный запрос после восстановления закрывает выключатель и обновляет кэш
+        respond(200, views(9));
+        Thread.sleep(OPEN_DURATION_MS + 50);
+        assertThat(statsService.getViewsForEvent(1L)).isEqualTo(9L);
+        assertThat(statsClient.getCircuitState()).isEqualTo(CircuitState.CLOSED);
+
+        respond(500, "{}");
+        assertThat(statsService.getViewsForEvent(1L)).isEqualTo(9L);
+    }
+
+    private void respond(int status, String body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    private static String views(long hits) {
+        return "[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":" + hits + "}]";
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Автоматический выключатель для запросов к сервису статистики.
+ После failureThreshold последовательных ошибок запросы отклоняются сразу, без ожидания таймаутов;
+ по истечении openDurationMs пропускается один пробный запрос (HALF_OPEN)
+ */
+@Slf4j
+class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CircuitState.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile long openedAtNanos;
+
+    CircuitBreaker(CircuitBreakerSettings settings) {
+        this.failureThreshold = Math.max(1, settings.getFailureThreshold());
+        this.openDurationNanos = settings.getOpenDurationMs() * 1_000_000L;
+    }
+
+    // Разрешение на вызов; false — вызов нужно отклонить без обращения к серверу
+    boolean tryAcquire() {
+        CircuitState current = state.get();
+        if (current == CircuitState.CLOSED) {
+            return true;
+        }
+
+        if (current == CircuitState.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+                rejectedCount.increment();
+                return false;
+            }
+            state.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN);
+        }
+
+        // В состоянии HALF_OPEN к серверу идет только один пробный вызов
+        if (probeInFlight.compareAndSet(false, true)) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(CircuitState.CLOSED) != CircuitState.CLOSED) {
+            log.info("Сервис статистики снова доступен, выключатель закрыт");
+        }
+        probeInFlight.set(false);
+    }
+
+    void onFailure() {
+        CircuitState current = state.get();
+        // Ошибки вызовов, начатых до открытия, не продлевают время открытия
+        if (current == CircuitState.OPEN) {
+            return;
+        }
+        if (current == CircuitState.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    CircuitState getState() {
+        return state.get();
+    }
+
+    long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        consecutiveFailures.set(0);
+        if (state.getAndSet(CircuitState.OPEN) != CircuitState.OPEN) {
+            log.warn("Сервис статистики недоступен, выключатель открыт на {} мс", openDurationNanos / 1_000_000L);
+        }
+        probeInFlight.set(false);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CircuitBreakerSettings {
+    // Количество последовательных ошибок, после которого выключатель открывается
+    @Builder.Default
+    private int failureThreshold = 5;
+
+    // Время, в течение которого вызовы отклоняются до пробного запроса
+    @Builder.Default
+    private long openDurationMs = 10_000;
+}
@@ -0,0 +1,10 @@
+package ru.practicum;
+
+public enum CircuitState {
+    // Вызовы выполняются, последовательные ошибки подсчитываются
+    CLOSED,
+    // Вызовы отклоняются без обращения к серверу до истечения времени открытия
+    OPEN,
+    // Пропускается один пробный вызов: успех закрывает выключатель, ошибка снова открывает
+    HALF_OPEN
+}
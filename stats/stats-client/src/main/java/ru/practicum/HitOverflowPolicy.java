@@ -0,0 +1,12 @@
+package ru.practicum;
+
+// Поведение очереди хитов при её переполнении
+public enum HitOverflowPolicy {
+    // Вытеснить самый старый хит из очереди
+    DROP_OLDEST,
+    // Ожидать освобождения места в очереди не дольше заданного таймаута
+    BLOCK,
+    // Передать хит фоновому потоку через дополнительный буфер той же емкости: фоновый поток сохраняет
+    // такие хиты в дисковый буфер, а если он не задан — отправляет отдельными пакетами
+    SPILL
+}
@@ -0,0 +1,262 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+ Ограниченная очередь хитов с фоновой пакетной отправкой.
+ Отправка выполняется единственным фоновым потоком по таймеру или при накоплении полного пакета.
+ Если задан каталог буфера, неотправленные пакеты сохраняются на диск и досылаются тем же потоком
+ после первой успешной отправки.
+ Поток вызывающего кода никогда не выполняет сетевых или дисковых операций: при политике SPILL хиты,
+ не поместившиеся в очередь, попадают в отдельный ограниченный буфер, который разбирает фоновый поток
+ */
+@Slf4j
+public class HitQueue implements AutoCloseable {
+    // Ограничение досылки из буфера за один цикл, чтобы не задерживать отправку новых хитов
+    private static final int REPLAY_BATCHES_PER_FLUSH = 10;
+
+    private final HitQueueSettings settings;
+    private final Consumer<List<EndpointHitDto>> batchSender;
+    private final BlockingQueue<EndpointHitDto> queue;
+    // Хиты, не поместившиеся в очередь при политике SPILL
+    private final BlockingQueue<EndpointHitDto> overflow;
+    private final ScheduledExecutorService flusher;
+    private final HitSpool spool;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    // Разбор очереди выполняется не более чем одним потоком (фоновым или закрывающим очередь)
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private volatile boolean closed;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public HitQueue(HitQueueSettings settings, Consumer<List<EndpointHitDto>> batchSender) {
+        this.settings = settings;
+        this.batchSender = batchSender;
+        this.queue = new ArrayBlockingQueue<>(settings.getCapacity());
+        this.overflow = settings.getOverflowPolicy() == HitOverflowPolicy.SPILL
+                ? new ArrayBlockingQueue<>(settings.getCapacity())
+                : null;
+        this.spool = settings.getSpoolDirectory() == null || settings.getSpoolDirectory().isBlank()
+                ? null
+                : new HitSpool(Path.of(settings.getSpoolDirectory()), settings.getSpoolSegmentBytes(),
+                        settings.getSpoolMaxBytes());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushSafely,
+                settings.getFlushIntervalMs(), settings.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    // Постановка хита в очередь без ожидания ответа сервиса статистики; после закрытия очереди хит отбрасывается
+    public void offer(EndpointHitDto hit) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (!enqueue(hit)) {
+            return;
+        }
+        queued.incrementAndGet();
+
+        if (queue.size() >= settings.getBatchSize() || (overflow != null && !overflow.isEmpty())) {
+            requestFlush();
+        }
+    }
+
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    // Хиты, сохраненные в дисковый буфер после ошибки отправки
+    public long getSpooledCount() {
+        return spool != null ? spool.getSpooledCount() : 0;
+    }
+
+    // Хиты, досланные из дискового буфера
+    public long getReplayedCount() {
+        return spool != null ? spool.getReplayedCount() : 0;
+    }
+
+    // Хиты, потерянные из-за переполнения дискового буфера
+    public long getSpoolDiscardedCount() {
+        return spool != null ? spool.getDiscardedCount() : 0;
+    }
+
+    public int size() {
+        return queue.size() + (overflow != null ? overflow.size() : 0);
+    }
+
+    // Остановка фоновой отправки с досылкой оставшихся хитов
+    @Override
+    public void close() {
+        closed = true;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(settings.getFlushIntervalMs() * 2, TimeUnit.MILLISECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private boolean enqueue(EndpointHitDto hit) {
+        switch (settings.getOverflowPolicy()) {
+            case BLOCK -> {
+                try {
+                    if (queue.offer(hit, settings.getBlockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.incrementAndGet();
+                return false;
+            }
+            case SPILL -> {
+                if (queue.offer(hit) || overflow.offer(hit)) {
+                    return true;
+                }
+                dropped.incrementAndGet();
+                return false;
+            }
+            default -> {
+                while (!queue.offer(hit)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                // Очередь закрывается: оставшиеся хиты отправит close()
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        drainLock.lock();
+        try {
+            flushRequested.set(false);
+            boolean delivered = drainOverflow();
+            List<EndpointHitDto> batch = new ArrayList<>(settings.getBatchSize());
+            while (queue.drainTo(batch, settings.getBatchSize()) > 0) {
+                delivered &= sendBatch(batch);
+                batch = new ArrayList<>(settings.getBatchSize());
+            }
+            if (delivered && spool != null) {
+                replaySpool();
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    // Хиты сверх емкости очереди: при наличии буфера сразу сохраняются на диск (переполнение очереди означает,
+    // что сервис статистики не успевает их принимать), иначе отправляются отдельными пакетами
+    private boolean drainOverflow() {
+        if (overflow == null) {
+            return true;
+        }
+        boolean delivered = true;
+        List<EndpointHitDto> batch = new ArrayList<>(settings.getBatchSize());
+        while (overflow.drainTo(batch, settings.getBatchSize()) > 0) {
+            if (spool != null) {
+                spoolOrFail(batch, null);
+            } else {
+                delivered &= sendBatch(batch);
+            }
+            batch = new ArrayList<>(settings.getBatchSize());
+        }
+        return delivered;
+    }
+
+    private boolean sendBatch(List<EndpointHitDto> batch) {
+        try {
+            batchSender.accept(batch);
+            flushed.addAndGet(batch.size());
+            return true;
+        } catch (Exception e) {
+            spoolOrFail(batch, e);
+            return false;
+        }
+    }
+
+    // Сохранение пакета в дисковый буфер; cause == null — пакет не отправлялся из-за переполнения очереди
+    private void spoolOrFail(List<EndpointHitDto> batch, Exception cause) {
+        String reason = cause != null ? cause.getMessage() : "очередь хитов переполнена";
+        if (spool != null) {
+            try {
+                spool.append(batch);
+                log.warn("Не удалось отправить {} хитов в сервис статистики, хиты сохранены в буфер: {}",
+                        batch.size(), reason);
+                return;
+            } catch (Exception e) {
+                log.error("Не удалось сохранить хиты в буфер: {}", e.getMessage());
+            }
+        }
+        failed.addAndGet(batch.size());
+        log.error("Не удалось отправить {} хитов в сервис статистики: {}", batch.size(), reason);
+    }
+
+    // Досылка хитов из дискового буфера; останавливается при первой ошибке, позиция чтения при этом не сдвигается
+    private void replaySpool() {
+        for (int i = 0; i < REPLAY_BATCHES_PER_FLUSH && spool.hasPending(); i++) {
+            List<EndpointHitDto> batch = spool.peek(settings.getBatchSize());
+            if (!batch.isEmpty()) {
+                try {
+                    batchSender.accept(batch);
+                } catch (Exception e) {
+                    log.warn("Не удалось дослать {} хитов из буфера: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                flushed.addAndGet(batch.size());
+            }
+            spool.commit(batch.size());
+        }
+    }
+}
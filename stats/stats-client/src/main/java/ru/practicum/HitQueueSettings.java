@@ -0,0 +1,38 @@
+package ru.practicum;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class HitQueueSettings {
+    // Максимальное количество хитов, ожидающих отправки
+    @Builder.Default
+    private int capacity = 10_000;
+
+    // Количество хитов, при накоплении которого отправка запускается досрочно
+    @Builder.Default
+    private int batchSize = 100;
+
+    // Период фоновой отправки накопленных хитов
+    @Builder.Default
+    private long flushIntervalMs = 1_000;
+
+    @Builder.Default
+    private HitOverflowPolicy overflowPolicy = HitOverflowPolicy.DROP_OLDEST;
+
+    // Максимальное время ожидания места в очереди для политики BLOCK
+    @Builder.Default
+    private long blockTimeoutMs = 50;
+
+    // Каталог дискового буфера недоставленных хитов; не задан — хиты при ошибке отправки теряются
+    private String spoolDirectory;
+
+    // Размер одного файла-сегмента буфера
+    @Builder.Default
+    private int spoolSegmentBytes = 4 * 1024 * 1024;
+
+    // Максимальный размер буфера, при превышении удаляется самый старый сегмент
+    @Builder.Default
+    private long spoolMaxBytes = 256L * 1024 * 1024;
+}
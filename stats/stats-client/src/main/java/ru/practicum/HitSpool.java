@@ -0,0 +1,408 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+ Дисковый буфер хитов, которые не удалось доставить в сервис статистики.
+ Хиты дописываются в отображенные в память файлы-сегменты фиксированного размера (hits-<номер>.seg),
+ формат записи: [длина данных: int][CRC32 данных: int][данные], за последней записью всегда стоит нулевая длина.
+ Позиция чтения (номер сегмента и смещение) хранится в hits.offset и заменяется атомарным переименованием,
+ поэтому после падения процесса воспроизведение продолжается с последнего подтвержденного пакета
+ (доставка "хотя бы один раз"). При превышении лимита размера удаляется самый старый сегмент.
+ Хиты без app, uri или ip в буфер не попадают: сервис статистики их все равно не примет
+ */
+@Slf4j
+class HitSpool implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "hits-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String OFFSET_FILE = "hits.offset";
+    // Заголовок записи: длина данных и CRC32
+    private static final int HEADER_BYTES = 8;
+    // Место под нулевую длину, завершающую сегмент
+    private static final int END_MARKER_BYTES = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    // Сегменты с поврежденной записью, потеря которой уже учтена
+    private final Set<Long> corruptSegments = new HashSet<>();
+
+    private long writeSeq;
+    private int writePosition;
+    private long readSeq;
+    private int readPosition;
+    // Позиция после последней выданной на отправку записи, становится позицией чтения в commit()
+    private long pendingSeq;
+    private int pendingPosition;
+
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    HitSpool(Path directory, int segmentBytes, long maxBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentBytes);
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть буфер хитов в " + directory, e);
+        }
+    }
+
+    // Запись пакета хитов в конец буфера
+    void append(List<EndpointHitDto> hits) {
+        lock.lock();
+        try {
+            for (EndpointHitDto hit : hits) {
+                byte[] payload = encode(hit);
+                if (payload == null || HEADER_BYTES + payload.length + END_MARKER_BYTES > segmentBytes) {
+                    discarded.incrementAndGet();
+                    continue;
+                }
+
+                MappedByteBuffer buffer = segments.get(writeSeq);
+                if (writePosition + HEADER_BYTES + payload.length + END_MARKER_BYTES > buffer.capacity()) {
+                    rotate();
+                    buffer = segments.get(writeSeq);
+                }
+
+                // Длина записывается последней: незавершенная запись не выглядит корректной
+                buffer.putInt(writePosition + 4, checksum(payload));
+                buffer.put(writePosition + HEADER_BYTES, payload);
+                buffer.putInt(writePosition + HEADER_BYTES + payload.length, 0);
+                buffer.putInt(writePosition, payload.length);
+                writePosition += HEADER_BYTES + payload.length;
+                spooled.incrementAndGet();
+            }
+            segments.get(writeSeq).force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать хиты в буфер " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean hasPending() {
+        lock.lock();
+        try {
+            return readSeq < writeSeq || readPosition < writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Чтение до max хитов с текущей позиции без ее сдвига; позиция сдвигается вызовом commit()
+    List<EndpointHitDto> peek(int max) {
+        lock.lock();
+        try {
+            List<EndpointHitDto> hits = new ArrayList<>();
+            long seq = readSeq;
+            int position = readPosition;
+            while (hits.size() < max) {
+                MappedByteBuffer buffer = segments.get(seq);
+                int limit = seq == writeSeq ? writePosition : buffer.capacity();
+                byte[] payload = readPayload(buffer, position, limit);
+                if (payload == null) {
+                    Long next = segments.higherKey(seq);
+                    if (seq == writeSeq || next == null) {
+                        break;
+                    }
+                    skipCorruptTail(seq, buffer, position);
+                    seq = next;
+                    position = 0;
+                    continue;
+                }
+                hits.add(decode(payload));
+                position += HEADER_BYTES + payload.length;
+            }
+            pendingSeq = seq;
+            pendingPosition = position;
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Подтверждение доставки прочитанных peek() хитов: позиция сохраняется, прочитанные сегменты удаляются
+    void commit(int delivered) {
+        lock.lock();
+        try {
+            if (pendingSeq > readSeq || (pendingSeq == readSeq && pendingPosition > readPosition)) {
+                readSeq = pendingSeq;
+                readPosition = pendingPosition;
+            }
+            replayed.addAndGet(delivered);
+            while (segments.firstKey() < readSeq) {
+                deleteSegment(segments.firstKey());
+            }
+            persistOffset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getSpooledCount() {
+        return spooled.get();
+    }
+
+    long getReplayedCount() {
+        return replayed.get();
+    }
+
+    // Хиты, потерянные из-за лимита размера буфера, слишком большой или поврежденной записи, пустых полей
+    long getDiscardedCount() {
+        return discarded.get();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            segments.get(writeSeq).force();
+            persistOffset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Восстановление состояния: сегменты с диска, конец записанных данных и сохраненная позиция чтения
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    Long seq = parseSeq(name);
+                    if (seq == null) {
+                        log.warn("Файл {} в буфере хитов не похож на сегмент и пропущен", path);
+                        continue;
+                    }
+                    segments.put(seq, map(path));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(1L, map(segmentPath(1L)));
+        }
+
+        writeSeq = segments.lastKey();
+        MappedByteBuffer writeBuffer = segments.get(writeSeq);
+        writePosition = 0;
+        byte[] payload;
+        while ((payload = readPayload(writeBuffer, writePosition, writeBuffer.capacity())) != null) {
+            writePosition += HEADER_BYTES + payload.length;
+        }
+        // Хвост незавершенной записи после падения отсекается
+        if (writePosition + END_MARKER_BYTES <= writeBuffer.capacity()) {
+            writeBuffer.putInt(writePosition, 0);
+        }
+
+        readSeq = segments.firstKey();
+        readPosition = 0;
+        Path offsetPath = directory.resolve(OFFSET_FILE);
+        if (Files.exists(offsetPath)) {
+            ByteBuffer offset = ByteBuffer.wrap(Files.readAllBytes(offsetPath));
+            long seq = offset.getLong();
+            int position = (int) offset.getLong();
+            if (segments.containsKey(seq)) {
+                readSeq = seq;
+                readPosition = seq == writeSeq ? Math.min(position, writePosition) : position;
+            }
+        }
+        pendingSeq = readSeq;
+        pendingPosition = readPosition;
+
+        if (hasPending()) {
+            log.info("В буфере {} есть недоставленные хиты, они будут отправлены после восстановления связи",
+                    directory);
+        }
+    }
+
+    private void rotate() throws IOException {
+        segments.get(writeSeq).force();
+        writeSeq++;
+        segments.put(writeSeq, map(segmentPath(writeSeq)));
+        writePosition = 0;
+
+        while (segments.size() > maxSegments) {
+            long oldest = segments.firstKey();
+            int start = oldest == readSeq ? readPosition : 0;
+            long lost = countRecords(segments.get(oldest), start);
+            discarded.addAndGet(lost);
+            log.warn("Буфер хитов {} переполнен, удален сегмент {} ({} хитов)", directory, oldest, lost);
+
+            deleteSegment(oldest);
+            if (readSeq <= oldest) {
+                readSeq = segments.firstKey();
+                readPosition = 0;
+                persistOffset();
+            }
+        }
+    }
+
+    /*
+     Запись внутри заполненного сегмента повреждена (не совпала длина или CRC): границы следующих записей
+     неизвестны, поэтому остаток сегмента пропускается. Сколько хитов в нем было, узнать нельзя,
+     в потерянные засчитывается один хит, а в журнал пишется объем пропущенных данных.
+     Повторный peek() до подтверждения снова проходит этот сегмент, но потеря учитывается один раз
+     */
+    private void skipCorruptTail(long seq, MappedByteBuffer buffer, int position) {
+        if (position + HEADER_BYTES > buffer.capacity() || buffer.getInt(position) == 0
+                || !corruptSegments.add(seq)) {
+            return;
+        }
+        discarded.incrementAndGet();
+        log.warn("Поврежденная запись в сегменте {} буфера хитов {} на смещении {}, пропущено {} байт",
+                seq, directory, position, buffer.capacity() - position);
+    }
+
+    private void deleteSegment(long seq) {
+        segments.remove(seq);
+        corruptSegments.remove(seq);
+        try {
+            Files.deleteIfExists(segmentPath(seq));
+        } catch (IOException e) {
+            log.warn("Не удалось удалить сегмент буфера хитов {}: {}", segmentPath(seq), e.getMessage());
+        }
+    }
+
+    // Сегмент и временный файл позиции сбрасываются на диск до переименования, чтобы после сбоя
+    // файл позиции не оказался пустым или не указывал на несохраненные данные
+    private void persistOffset() {
+        ByteBuffer offset = ByteBuffer.allocate(16)
+                .putLong(readSeq)
+                .putLong(readPosition)
+                .flip();
+        Path offsetPath = directory.resolve(OFFSET_FILE);
+        Path tempPath = directory.resolve(OFFSET_FILE + ".tmp");
+        try {
+            segments.get(writeSeq).force();
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (offset.hasRemaining()) {
+                    channel.write(offset);
+                }
+                channel.force(true);
+            }
+            Files.move(tempPath, offsetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить позицию чтения буфера хитов {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(channel.size(), segmentBytes);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Номер сегмента из имени файла или null, если имя не соответствует формату
+    private static Long parseSeq(String name) {
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Path segmentPath(long seq) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    // Данные записи по смещению position или null, если записи нет (конец данных или поврежденная запись)
+    private static byte[] readPayload(MappedByteBuffer buffer, int position, int limit) {
+        if (position + HEADER_BYTES > limit) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_BYTES + length > limit) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER_BYTES, payload);
+        return checksum(payload) == buffer.getInt(position + 4) ? payload : null;
+    }
+
+    private static long countRecords(MappedByteBuffer buffer, int position) {
+        long count = 0;
+        byte[] payload;
+        while ((payload = readPayload(buffer, position, buffer.capacity())) != null) {
+            position += HEADER_BYTES + payload.length;
+            count++;
+        }
+        return count;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // Компактное двоичное представление хита: время (секунды UTC и наносекунды) и строки app, uri, ip;
+    // null, если хит нельзя сохранить
+    private static byte[] encode(EndpointHitDto hit) {
+        if (hit.getApp() == null || hit.getUri() == null || hit.getIp() == null) {
+            return null;
+        }
+        LocalDateTime timestamp = hit.getTimestamp() != null ? hit.getTimestamp() : LocalDateTime.now();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(timestamp.getNano());
+            out.writeUTF(hit.getApp());
+            out.writeUTF(hit.getUri());
+            out.writeUTF(hit.getIp());
+        } catch (UTFDataFormatException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EndpointHitDto decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            return EndpointHitDto.builder()
+                    .timestamp(timestamp)
+                    .app(in.readUTF())
+                    .uri(in.readUTF())
+                    .ip(in.readUTF())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.practicum;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class HttpTransportSettings {
+    // Максимальное количество соединений с сервисом статистики в пуле
+    @Builder.Default
+    private int maxConnections = 50;
+
+    // Таймаут установки соединения
+    @Builder.Default
+    private long connectTimeoutMs = 1_000;
+
+    // Таймаут ожидания ответа (между пакетами данных)
+    @Builder.Default
+    private long readTimeoutMs = 3_000;
+
+    // Максимальное время ожидания свободного соединения в пуле
+    @Builder.Default
+    private long poolTimeoutMs = 500;
+
+    // Время простоя, после которого соединение закрывается
+    @Builder.Default
+    private long idleTimeoutMs = 30_000;
+
+    // Сжатие ответов (Accept-Encoding: gzip, deflate)
+    @Builder.Default
+    private boolean gzip = true;
+}
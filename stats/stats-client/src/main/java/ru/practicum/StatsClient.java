@@ -1,10 +1,21 @@
 package ru.practicum;
 
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.http.*;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
@@ -13,13 +24,128 @@ import java.util.List;
 import java.util.Map;
 
 @Slf4j
-public class StatsClient {
+public class StatsClient implements AutoCloseable {
     private final String serverUrl;
+    private final HttpComponentsClientHttpRequestFactory requestFactory;
     private final RestTemplate restTemplate;
+    private final HitQueue hitQueue;
+    private final CircuitBreaker circuitBreaker;
 
     public StatsClient(String serverUrl) {
+        this(serverUrl, null);
+    }
+
+    public StatsClient(String serverUrl, HitQueueSettings hitQueueSettings) {
+        this(serverUrl, hitQueueSettings, HttpTransportSettings.builder().build());
+    }
+
+    public StatsClient(String serverUrl, HitQueueSettings hitQueueSettings, HttpTransportSettings transportSettings) {
+        this(serverUrl, hitQueueSettings, transportSettings, CircuitBreakerSettings.builder().build());
+    }
+
+    public StatsClient(String serverUrl, HitQueueSettings hitQueueSettings, HttpTransportSettings transportSettings,
+                       CircuitBreakerSettings circuitBreakerSettings) {
         this.serverUrl = serverUrl;
-        this.restTemplate = new RestTemplate();
+        this.requestFactory = createRequestFactory(transportSettings);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.hitQueue = hitQueueSettings != null ? new HitQueue(hitQueueSettings, this::sendHits) : null;
+        this.circuitBreaker = new CircuitBreaker(circuitBreakerSettings);
+    }
+
+    /*
+     Транспорт на Apache HttpClient 5: ограниченный пул соединений с keep-alive и таймаутами
+     на соединение, ожидание пула и ответ, чтобы зависший сервис статистики не блокировал
+     потоки основного сервиса бесконечно
+     */
+    private static HttpComponentsClientHttpRequestFactory createRequestFactory(HttpTransportSettings settings) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(settings.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(settings.getReadTimeoutMs()))
+                        .build())
+                .build();
+
+        HttpClientBuilder clientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(settings.getPoolTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(settings.getReadTimeoutMs()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(settings.getIdleTimeoutMs()));
+        if (!settings.isGzip()) {
+            clientBuilder.disableContentCompression();
+        }
+        return new HttpComponentsClientHttpRequestFactory(clientBuilder.build());
+    }
+
+    // Метрики длительности вызовов (http.client.requests) через Micrometer Observation
+    public void setObservationRegistry(ObservationRegistry observationRegistry) {
+        restTemplate.setObservationRegistry(observationRegistry);
+    }
+
+    // Асинхронное сохранение хита через очередь; без настроенной очереди хит отправляется синхронно
+    public void enqueueHit(EndpointHitDto endpointHitDto) {
+        if (hitQueue == null) {
+            saveHit(endpointHitDto);
+            return;
+        }
+        hitQueue.offer(endpointHitDto);
+    }
+
+    public long getQueuedHits() {
+        return hitQueue != null ? hitQueue.getQueuedCount() : 0;
+    }
+
+    public long getDroppedHits() {
+        return hitQueue != null ? hitQueue.getDroppedCount() : 0;
+    }
+
+    public long getFlushedHits() {
+        return hitQueue != null ? hitQueue.getFlushedCount() : 0;
+    }
+
+    public long getFailedHits() {
+        return hitQueue != null ? hitQueue.getFailedCount() : 0;
+    }
+
+    public long getSpooledHits() {
+        return hitQueue != null ? hitQueue.getSpooledCount() : 0;
+    }
+
+    public long getReplayedHits() {
+        return hitQueue != null ? hitQueue.getReplayedCount() : 0;
+    }
+
+    public long getSpoolDiscardedHits() {
+        return hitQueue != null ? hitQueue.getSpoolDiscardedCount() : 0;
+    }
+
+    public int getPendingHits() {
+        return hitQueue != null ? hitQueue.size() : 0;
+    }
+
+    public CircuitState getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    // Количество запросов статистики, отклоненных открытым выключателем
+    public long getRejectedStatsRequests() {
+        return circuitBreaker.getRejectedCount();
+    }
+
+    @Override
+    public void close() {
+        if (hitQueue != null) {
+            hitQueue.close();
+        }
+        try {
+            requestFactory.destroy();
+        } catch (Exception e) {
+            log.warn("Ошибка при закрытии пула соединений с сервисом статистики: {}", e.getMessage());
+        }
     }
 
     public void saveHit(EndpointHitDto endpointHitDto) {
@@ -44,6 +170,23 @@ public class StatsClient {
     }
 
     public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return getStats(start, end, uris, unique, null);
+    }
+
+    // Получение статистики; approximate = true включает оценку уникальных посещений по скетчам HyperLogLog
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                       Boolean approximate) {
+        return getStats(start, end, uris, null, unique, approximate);
+    }
+
+    // Статистика по всем URI с заданным префиксом (например, /events/) одним запросом вместо списка URI
+    public List<ViewStatsDto> getStatsByPrefix(LocalDateTime start, LocalDateTime end, String uriPrefix,
+                                               Boolean unique, Boolean approximate) {
+        return getStats(start, end, null, uriPrefix, unique, approximate);
+    }
+
+    private List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, String uriPrefix,
+                                        Boolean unique, Boolean approximate) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
         String url = serverUrl + "/stats?start={start}&end={end}";
@@ -56,14 +199,49 @@ public class StatsClient {
             params.put("uris", String.join(",", uris));
         }
 
+        if (uriPrefix != null) {
+            url += "&uriPrefix={uriPrefix}";
+            params.put("uriPrefix", uriPrefix);
+        }
+
         if (unique != null) {
             url += "&unique={unique}";
             params.put("unique", unique);
         }
 
+        if (approximate != null) {
+            url += "&approximate={approximate}";
+            params.put("approximate", approximate);
+        }
+
+        return fetchStats(url, params);
+    }
+
+    // Самые популярные URI за последнее окно window; prefix ограничивает URI (например, /events/)
+    public List<ViewStatsDto> getTop(Duration window, int k, String prefix) {
+        String url = serverUrl + "/stats/top?window={window}&k={k}";
+        Map<String, Object> params = new HashMap<>();
+        params.put("window", window.toSeconds() + "s");
+        params.put("k", k);
+
+        if (prefix != null) {
+            url += "&prefix={prefix}";
+            params.put("prefix", prefix);
+        }
+
+        return fetchStats(url, params);
+    }
+
+    // Запрос статистики под защитой выключателя
+    private List<ViewStatsDto> fetchStats(String url, Map<String, Object> params) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new StatsClientException("Сервис статистики недоступен: запрос отклонен выключателем");
+        }
+
         try {
             ResponseEntity<ViewStatsDto[]> response =
                     restTemplate.getForEntity(url, ViewStatsDto[].class, params);
+            circuitBreaker.onSuccess();
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 return Arrays.asList(response.getBody());
@@ -72,12 +250,43 @@ public class StatsClient {
             return List.of();
 
         } catch (HttpStatusCodeException e) {
+            // Ошибки запроса (4xx) не говорят о недоступности сервера и выключатель не открывают
+            if (e.getStatusCode().is5xxServerError()) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
             log.error("Ошибка при получении статистики из сервиса статистики. Статус: {}, Ответ: {}",
                     e.getStatusCode(), e.getResponseBodyAsString());
             throw new StatsClientException("Ошибка при получении статистики из сервиса статистики: " + e.getMessage(), e);
         } catch (Exception e) {
+            circuitBreaker.onFailure();
             log.error("Неожиданная ошибка при получении статистики из сервиса статистики: {}", e.getMessage());
             throw new StatsClientException("Неожиданная ошибка при получении статистики из сервиса статистики", e);
         }
     }
-}
\ No newline at end of file
+
+    // Отправка пакета хитов, накопленного очередью, одним запросом
+    private void sendHits(List<EndpointHitDto> hits) {
+        String url = serverUrl + "/hit/batch";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        HttpEntity<List<EndpointHitDto>> requestEntity = new HttpEntity<>(hits, headers);
+
+        try {
+            ResponseEntity<HitBatchResultDto> response =
+                    restTemplate.exchange(url, HttpMethod.POST, requestEntity, HitBatchResultDto.class);
+            log.debug("Пакет из {} хитов сохранен в сервисе статистики. Ответ: {}", hits.size(), response.getBody());
+        } catch (HttpStatusCodeException e) {
+            log.error("Ошибка при сохранении пакета запросов в сервисе статистики. Статус: {}, Ответ: {}",
+                    e.getStatusCode(), e.getResponseBodyAsString());
+            throw new StatsClientException("Ошибка при сохранении пакета запросов в сервисе статистики: "
+                    + e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("Неожиданная ошибка при сохранении пакета запросов в сервисе статистики: {}", e.getMessage());
+            throw new StatsClientException("Неожиданная ошибка при сохранении пакета запросов в сервисе статистики", e);
+        }
+    }
+}
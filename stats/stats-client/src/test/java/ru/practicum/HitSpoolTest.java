@@ -0,0 +1,185 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Дисковый буфер хитов: подтверждение, восстановление после перезапуска, обрезка и повреждение записей, ротация
+class HitSpoolTest {
+    // Запись одного хита занимает 62 байта: в сегмент помещаются 4 записи и завершающая нулевая длина
+    private static final int SEGMENT_BYTES = 256;
+    private static final long UNLIMITED_BYTES = 1 << 20;
+    private static final int RECORD_BYTES = 62;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void committedHitsAreNotReplayedAfterReopen() {
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 3));
+            assertThat(spool.peek(10)).isEqualTo(hits(0, 3));
+            spool.commit(3);
+            spool.append(hits(3, 5));
+        }
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            assertThat(spool.hasPending()).isTrue();
+            assertThat(spool.peek(10)).isEqualTo(hits(3, 5));
+            spool.commit(2);
+            assertThat(spool.hasPending()).isFalse();
+            assertThat(spool.getReplayedCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void uncommittedHitsAreReplayedAfterReopen() {
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 3));
+            assertThat(spool.peek(10)).hasSize(3);
+        }
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            assertThat(spool.peek(10)).isEqualTo(hits(0, 3));
+        }
+    }
+
+    @Test
+    void tornTailIsTruncatedOnReopen() throws IOException {
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 2));
+        }
+        // Падение во время записи: длина уже записана, данных и CRC нет
+        writeInt(segment(1), 2 * RECORD_BYTES, 40);
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            assertThat(spool.peek(10)).isEqualTo(hits(0, 2));
+            spool.append(hits(2, 3));
+            assertThat(spool.peek(10)).isEqualTo(hits(0, 3));
+            assertThat(spool.getDiscardedCount()).isZero();
+        }
+    }
+
+    @Test
+    void rotationPastMaxSegmentsDiscardsOldestHits() throws IOException {
+        try (HitSpool spool = spool(2 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 20; i++) {
+                spool.append(hits(i, i + 1));
+            }
+
+            List<EndpointHitDto> replayed = spool.peek(100);
+            assertThat(spool.getSpooledCount()).isEqualTo(20);
+            assertThat(replayed.size() + spool.getDiscardedCount()).isEqualTo(20);
+            assertThat(replayed).isEqualTo(hits(20 - replayed.size(), 20));
+            assertThat(segmentFiles()).hasSize(2);
+        }
+    }
+
+    @Test
+    void offsetInDeletedSegmentRestartsFromOldestSegment() throws IOException {
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 10));
+            assertThat(spool.peek(5)).isEqualTo(hits(0, 5));
+            spool.commit(5);
+        }
+        // Позиция чтения указывает в сегмент 2, которого больше нет
+        Files.delete(segment(2));
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            assertThat(spool.peek(100)).isEqualTo(hits(8, 10));
+        }
+    }
+
+    @Test
+    void corruptRecordInSealedSegmentSkipsRestOfSegmentAndIsCounted() throws IOException {
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 10));
+        }
+        // Неверная CRC второй записи первого сегмента
+        writeInt(segment(1), RECORD_BYTES + 4, 0xBAD);
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            List<EndpointHitDto> expected = Stream.concat(hits(0, 1).stream(), hits(4, 10).stream()).toList();
+            assertThat(spool.peek(100)).isEqualTo(expected);
+            // Повторное чтение без подтверждения не увеличивает счетчик потерь
+            assertThat(spool.peek(100)).isEqualTo(expected);
+            assertThat(spool.getDiscardedCount()).isEqualTo(1);
+
+            spool.commit(expected.size());
+            assertThat(spool.hasPending()).isFalse();
+        }
+    }
+
+    @Test
+    void hitsWithNullFieldsAreNotSpooled() {
+        EndpointHitDto withoutIp = hit(0);
+        withoutIp.setIp(null);
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(List.of(withoutIp, hit(1)));
+
+            assertThat(spool.getSpooledCount()).isEqualTo(1);
+            assertThat(spool.getDiscardedCount()).isEqualTo(1);
+            assertThat(spool.peek(10)).containsExactly(hit(1));
+        }
+    }
+
+    @Test
+    void strayFilesWithSegmentPrefixAreIgnored() throws IOException {
+        Files.createFile(directory.resolve("hits-backup.seg"));
+        Files.createFile(directory.resolve("hits-.seg"));
+
+        try (HitSpool spool = spool(UNLIMITED_BYTES)) {
+            spool.append(hits(0, 2));
+            assertThat(spool.peek(10)).isEqualTo(hits(0, 2));
+        }
+    }
+
+    private HitSpool spool(long maxBytes) {
+        return new HitSpool(directory, SEGMENT_BYTES, maxBytes);
+    }
+
+    private Path segment(long seq) {
+        return directory.resolve(String.format("hits-%020d.seg", seq));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).toList();
+        }
+    }
+
+    private static void writeInt(Path file, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(value).flip(), position);
+        }
+    }
+
+    // Хиты с номерами [from, to): записи одинаковой длины (RECORD_BYTES)
+    private static List<EndpointHitDto> hits(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(HitSpoolTest::hit)
+                .toList();
+    }
+
+    private static EndpointHitDto hit(int number) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(String.format("/events/%04d", number))
+                .ip("10.0.0.1")
+                .timestamp(LocalDateTime.of(2026, 10, 17, 12, 0, 0, number))
+                .build();
+    }
+}
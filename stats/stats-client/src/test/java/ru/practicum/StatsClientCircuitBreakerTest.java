@@ -0,0 +1,96 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Открытие выключателя после серии ошибок, отклонение вызовов без обращения к серверу и восстановление через HALF_OPEN
+class StatsClientCircuitBreakerTest {
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_DURATION_MS = 200;
+    private static final String STATS = "[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":7}]";
+
+    private StatsServerStub server;
+    private StatsClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StatsServerStub();
+        client = new StatsClient(server.url(), null, HttpTransportSettings.builder().build(),
+                CircuitBreakerSettings.builder()
+                        .failureThreshold(FAILURE_THRESHOLD)
+                        .openDurationMs(OPEN_DURATION_MS)
+                        .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void opensAfterConsecutiveServerErrorsAndRejectsWithoutCallingServer() {
+        server.respond(500, "{}");
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+        }
+        assertThat(client.getCircuitState()).isEqualTo(CircuitState.OPEN);
+
+        assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+        assertThat(server.requests()).isEqualTo(FAILURE_THRESHOLD);
+        assertThat(client.getRejectedStatsRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void closesAfterSuccessfulProbe() throws Exception {
+        openCircuit();
+        server.respond(200, STATS);
+        Thread.sleep(OPEN_DURATION_MS + 50);
+
+        List<ViewStatsDto> stats = getStats();
+
+        assertThat(stats).extracting(ViewStatsDto::getHits).containsExactly(7L);
+        assertThat(client.getCircuitState()).isEqualTo(CircuitState.CLOSED);
+        assertThat(server.requests()).isEqualTo(FAILURE_THRESHOLD + 1);
+    }
+
+    @Test
+    void reopensAfterFailedProbe() throws Exception {
+        openCircuit();
+        Thread.sleep(OPEN_DURATION_MS + 50);
+
+        assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+
+        assertThat(client.getCircuitState()).isEqualTo(CircuitState.OPEN);
+        assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+        assertThat(server.requests()).isEqualTo(FAILURE_THRESHOLD + 1);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        server.respond(400, "{}");
+        for (int i = 0; i < FAILURE_THRESHOLD * 2; i++) {
+            assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+        }
+        assertThat(client.getCircuitState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    private void openCircuit() {
+        server.respond(500, "{}");
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThatThrownBy(this::getStats).isInstanceOf(StatsClientException.class);
+        }
+        assertThat(client.getCircuitState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    private List<ViewStatsDto> getStats() {
+        return client.getStats(LocalDateTime.now().minusDays(1), LocalDateTime.now(), List.of("/events/1"), true);
+    }
+}
@@ -0,0 +1,10 @@
+-- Схема endpoint_hits до секционирования: несекционированная таблица только с первичным ключом.
+-- Используется как точка сравнения для endpoint_hits_benchmark.sql
+CREATE TABLE IF NOT EXISTS endpoint_hits (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app        VARCHAR(255) NOT NULL,
+    uri        VARCHAR(512) NOT NULL,
+    ip         VARCHAR(45) NOT NULL,
+    timestamp  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_endpoint_hits PRIMARY KEY (id)
+);
@@ -0,0 +1,45 @@
+-- Загрузка синтетических хитов для нагрузочной проверки запросов к endpoint_hits.
+--
+-- Секционированная таблица ("после"): пустая база, stats-server запускается один раз, чтобы создать схему:
+--   psql -h localhost -p 9091 -U stats -d stats -v rows=10000000 -f endpoint_hits_benchmark.sql
+--   psql -h localhost -p 9091 -U stats -d stats -f endpoint_hits_queries.sql
+-- Несекционированная таблица без индексов ("до"): пустая база со схемой из baseline_schema.sql:
+--   psql -h localhost -p 9091 -U stats -d stats_baseline -f baseline_schema.sql
+--   psql -h localhost -p 9091 -U stats -d stats_baseline -v rows=10000000 -f endpoint_hits_benchmark.sql
+--   psql -h localhost -p 9091 -U stats -d stats_baseline -f endpoint_hits_queries.sql
+--
+-- Хиты равномерно распределяются по последним 12 месяцам между 50 000 URI вида /events/{id}
+-- и 1 000 000 IP-адресов. После загрузки запросы выполняются скриптом endpoint_hits_queries.sql,
+-- результаты прогонов — в results-*.txt.
+-- Для 100 млн строк индексы ix_endpoint_hits_uri_pattern_timestamp и ix_endpoint_hits_timestamp
+-- удаляются перед загрузкой и создаются после нее тем же определением, что в schema.sql:
+-- вставка в индекс больше памяти машины идет в десятки раз медленнее (results-100m.txt)
+
+\timing on
+
+-- Месячные секции на весь диапазон данных, чтобы хиты не попадали в секцию по умолчанию;
+-- для несекционированной таблицы блок ничего не делает
+DO $$
+DECLARE
+    month DATE;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'endpoint_hits'::regclass) THEN
+        RETURN;
+    END IF;
+    FOR month IN SELECT generate_series(date_trunc('month', now() - interval '12 months'),
+                                        date_trunc('month', now()), interval '1 month')::date LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF endpoint_hits FOR VALUES FROM (%L) TO (%L)',
+                       'endpoint_hits_p' || to_char(month, 'YYYY_MM'), month, (month + interval '1 month')::date);
+    END LOOP;
+END $$;
+
+SELECT setseed(0.42);
+
+INSERT INTO endpoint_hits (app, uri, ip, timestamp)
+SELECT 'ewm-main-service',
+       '/events/' || (1 + (random() * 49999)::int),
+       '10.' || (random() * 15)::int || '.' || (random() * 255)::int || '.' || (random() * 255)::int,
+       now()::timestamp - random() * interval '365 days'
+FROM generate_series(1, :rows);
+
+VACUUM ANALYZE endpoint_hits;
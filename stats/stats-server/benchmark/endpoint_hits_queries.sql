@@ -0,0 +1,45 @@
+-- Запросы к endpoint_hits, заполненной endpoint_hits_benchmark.sql; запускаются отдельно от загрузки,
+-- чтобы загрузка не влияла на время выполнения:
+--   psql -h localhost -p 9091 -U stats -d stats -f endpoint_hits_queries.sql
+
+\timing on
+
+-- Распределение хитов по секциям: в секции по умолчанию не должно быть строк
+SELECT tableoid::regclass AS partition, COUNT(*) AS hits
+FROM endpoint_hits
+GROUP BY tableoid
+ORDER BY 1;
+
+-- Просмотры одного события за год: запрос main-service при открытии события
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, COUNT(DISTINCT ip)
+FROM endpoint_hits
+WHERE timestamp BETWEEN now()::timestamp - interval '1 year' AND now()::timestamp
+  AND uri IN ('/events/42')
+GROUP BY app, uri;
+
+-- Просмотры страницы из 100 событий за год
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, COUNT(DISTINCT ip)
+FROM endpoint_hits
+WHERE timestamp BETWEEN now()::timestamp - interval '1 year' AND now()::timestamp
+  AND uri IN (SELECT '/events/' || g FROM generate_series(1000, 1099) g)
+GROUP BY app, uri;
+
+-- Все URI за последние сутки: затрагивается только текущая секция
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, COUNT(ip)
+FROM endpoint_hits
+WHERE timestamp BETWEEN now()::timestamp - interval '1 day' AND now()::timestamp
+GROUP BY app, uri
+ORDER BY COUNT(ip) DESC;
+
+-- Все URI за один прошлый месяц: отсечение секций оставляет одну секцию
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT app, uri, COUNT(ip)
+FROM endpoint_hits
+WHERE timestamp >= date_trunc('month', now() - interval '6 months')
+  AND timestamp < date_trunc('month', now() - interval '5 months')
+GROUP BY app, uri
+ORDER BY COUNT(ip) DESC
+LIMIT 10;
@@ -0,0 +1,21 @@
+-- Данные для замера памяти GET /stats и GET /stats/stream (stats_stream_heap.sh).
+-- 1 000 000 разных URI вида /bulk/{n}, по одному хиту 2020-03-15, и роллапы DAY/HOUR/MINUTE для них:
+-- запрос за март 2020 без uris возвращает миллион строк. Выполняется на базе, где stats-server
+-- уже создал схему:
+--   psql -h localhost -p 9091 -U stats -d stats -f stats_stream_data.sql
+
+\timing on
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_p2020_03 PARTITION OF endpoint_hits
+    FOR VALUES FROM ('2020-03-01') TO ('2020-04-01');
+
+INSERT INTO endpoint_hits (app, uri, ip, timestamp)
+SELECT 'ewm-main-service', '/bulk/' || g, '10.0.' || (g % 250) || '.' || (g % 199), TIMESTAMP '2020-03-15 12:00:00'
+FROM generate_series(1, 1000000) g;
+
+INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+SELECT gr, date_trunc(lower(gr), TIMESTAMP '2020-03-15 12:00:00'), 'ewm-main-service', '/bulk/' || g, 1 + g % 7
+FROM generate_series(1, 1000000) g, (VALUES ('DAY'), ('HOUR'), ('MINUTE')) v(gr);
+
+VACUUM ANALYZE endpoint_hits;
+VACUUM ANALYZE endpoint_hit_rollups;
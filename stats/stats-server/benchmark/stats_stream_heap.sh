@@ -0,0 +1,39 @@
+#!/usr/bin/env bash
+# Пиковая занятость кучи stats-server во время одного запроса.
+# Запускает собранный jar с заданным -Xmx и логом G1, выполняет полную сборку мусора,
+# отправляет запрос и печатает код ответа, размер тела, время и наибольшую занятость кучи
+# перед сборками мусора, случившимися за время запроса. Данные — stats_stream_data.sql;
+# адрес базы можно переопределить переменной STATS_DATASOURCE_URL.
+#   ./stats_stream_heap.sh 64m '/stats/stream?start=2020-03-01%2000:00:00&end=2020-03-31%2023:59:59'
+set -euo pipefail
+
+XMX=$1
+REQUEST=$2
+ROOT=$(cd "$(dirname "$0")/../../.." && pwd)
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JCMD=${JAVA_HOME:+$JAVA_HOME/bin/}jcmd
+WORK=$(mktemp -d)
+trap 'kill $PID 2>/dev/null; rm -rf "$WORK"' EXIT
+
+"$JAVA" -Xmx"$XMX" -XX:+UseG1GC -Xlog:gc:file="$WORK/gc.log" \
+    -jar "$ROOT/stats/stats-server/target/stats-server-0.0.1-SNAPSHOT.jar" \
+    ${STATS_DATASOURCE_URL:+--spring.datasource.url=$STATS_DATASOURCE_URL} \
+    --spring.sql.init.mode=never --logging.level.root=WARN > "$WORK/stats.log" 2>&1 &
+PID=$!
+
+for _ in $(seq 60); do
+    curl -s http://localhost:9090/actuator/health | grep -q UP && break
+    sleep 2
+done
+
+"$JCMD" $PID GC.run > /dev/null
+sleep 1
+MARK=$(wc -l < "$WORK/gc.log")
+
+curl -s -o "$WORK/body" -w "xmx=$XMX http=%{http_code} bytes=%{size_download} time=%{time_total}s " \
+    "http://localhost:9090$REQUEST"
+echo "lines=$(wc -l < "$WORK/body")"
+# Строки лога G1 вида "Pause Young (Normal) (G1 Evacuation Pause) 52M->14M(64M)"
+tail -n +$((MARK + 1)) "$WORK/gc.log" | { grep -o '[0-9]*M->[0-9]*M' || true; } \
+    | awk -F'M->' '{ if ($1 + 0 > peak) peak = $1 + 0 } END { print "peak heap before GC: " (NR ? peak " MB" : "no GC") }'
+echo "OutOfMemoryError in log: $(grep -c OutOfMemoryError "$WORK/stats.log" || true)"
@@ -0,0 +1,16 @@
+package ru.practicum.cache;
+
+import ru.practicum.ViewStatsDto;
+
+import java.util.List;
+
+// Результат обращения к кэшу: статистика по URI, найденным в кэше, и URI, которые нужно запросить из базы данных
+public record CacheLookup(List<ViewStatsDto> stats, List<String> missedUris) {
+    public static CacheLookup miss(List<String> uris) {
+        return new CacheLookup(List.of(), uris);
+    }
+
+    public boolean isComplete() {
+        return missedUris != null && missedUris.isEmpty();
+    }
+}
@@ -0,0 +1,315 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.StatsRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Кэш счетчиков популярных URI в памяти.
+ Для каждого URI хранятся количество хитов и IP-адреса за всю историю, поэтому запрос с окном,
+ которое покрывает всю историю URI (например, скользящий год до текущего момента), обслуживается без обращения к PostgreSQL.
+ Счетчики увеличиваются после фиксации транзакции сохранения хитов. Запись регистрируется до чтения
+ из базы данных, и хиты, зафиксированные во время загрузки, сразу учитываются в ней; дважды может быть учтен
+ только хит, зафиксированный до начала чтения, если его обработка после фиксации началась уже после начала чтения.
+ Такие расхождения исправляются перечитыванием записей через refresh-after-minutes.
+ URI попадает в кэш только после admit-after-requests обращений, а загружается фоновой задачей:
+ запрос не ждет загрузки, и URI, которых нет в кэше, считаются по агрегатам, как без кэша.
+ Количество хитов и границы истории загружаются из часовых агрегатов, IP-адреса — из сырых хитов;
+ общее количество IP-адресов всех записей ограничено max-ips.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotStatsCache {
+    // Размер списка URI в одном запросе загрузки
+    private static final int LOAD_CHUNK_SIZE = 500;
+    // Доля записей, остающихся после вытеснения, чтобы не вытеснять при каждой загрузке
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Map<String, UriCounters> entries = new ConcurrentHashMap<>();
+    // Количество обращений к URI, которых еще нет в кэше
+    private final Map<String, Integer> candidates = new ConcurrentHashMap<>();
+    // URI, ожидающие фоновой загрузки или перечитывания
+    private final Set<String> pendingLoads = ConcurrentHashMap.newKeySet();
+    // Записи, которые загружаются из базы данных и еще не заменили текущие
+    private final Map<String, UriCounters> loading = new ConcurrentHashMap<>();
+    private final AtomicLong totalIps = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    private final StatsRepository statsRepository;
+    private final HitRollupRepository hitRollupRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Counter hits;
+    private Counter misses;
+
+    @Value("${stats.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.cache.max-uris:10000}")
+    private int maxUris;
+
+    @Value("${stats.cache.max-ips-per-uri:10000}")
+    private int maxIpsPerUri;
+
+    // Общее количество IP-адресов во всех записях
+    @Value("${stats.cache.max-ips:1000000}")
+    private long maxIps;
+
+    @Value("${stats.cache.admit-after-requests:2}")
+    private int admitAfterRequests;
+
+    @Value("${stats.cache.refresh-after-minutes:10}")
+    private long refreshAfterMinutes;
+
+    // Прогрев при старте: столько самых популярных URI за последние warm-hours часов
+    @Value("${stats.cache.warm-uris:1000}")
+    private int warmUris;
+
+    @Value("${stats.cache.warm-hours:24}")
+    private long warmHours;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("stats.cache.requests")
+                .description("URI в запросах статистики, обслуженные из кэша")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        misses = Counter.builder("stats.cache.requests")
+                .description("URI в запросах статистики, запрошенные из базы данных")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("stats.cache.hit.ratio", this, HotStatsCache::hitRatio)
+                .description("Доля URI, обслуженных из кэша")
+                .register(meterRegistry);
+        Gauge.builder("stats.cache.uris", entries, Map::size)
+                .description("Количество URI в кэше")
+                .register(meterRegistry);
+        Gauge.builder("stats.cache.ips", totalIps, AtomicLong::get)
+                .description("Количество IP-адресов во всех записях кэша")
+                .register(meterRegistry);
+
+        if (enabled) {
+            warm();
+        }
+    }
+
+    public CacheLookup lookup(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        if (!enabled || uris == null || uris.isEmpty()) {
+            return CacheLookup.miss(uris);
+        }
+
+        long nowNanos = System.nanoTime();
+        List<String> distinctUris = new ArrayList<>(new LinkedHashSet<>(uris));
+        List<ViewStatsDto> stats = new ArrayList<>();
+        List<String> missed = new ArrayList<>();
+        for (String uri : distinctUris) {
+            UriCounters entry = entries.get(uri);
+            if (entry == null) {
+                admit(uri);
+            } else if (isStale(entry, nowNanos)) {
+                // Устаревшая запись обслуживает запросы, пока перечитывается в фоне
+                requestLoad(uri);
+            }
+            if (entry == null || !entry.covers(start, end) || (unique && !entry.isUniqueTracked())) {
+                missed.add(uri);
+                continue;
+            }
+            entry.touch(nowNanos);
+            entry.apps().forEach((app, counters) -> {
+                long count = unique ? counters.ips.size() : counters.hits.sum();
+                if (count > 0) {
+                    stats.add(new ViewStatsDto(app, uri, count));
+                }
+            });
+        }
+
+        hits.increment(distinctUris.size() - missed.size());
+        misses.increment(missed.size());
+        return new CacheLookup(stats, missed);
+    }
+
+    // Учет сохраненных хитов после фиксации текущей транзакции
+    public void recordAfterCommit(List<EndpointHit> savedHits) {
+        if (!enabled || savedHits.isEmpty()) {
+            return;
+        }
+
+        // Записи, загрузка которых начнется до фиксации, также должны получить эти хиты
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(savedHits);
+                }
+            });
+        } else {
+            record(savedHits);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.values().forEach(UriCounters::release);
+        entries.clear();
+        candidates.clear();
+        pendingLoads.clear();
+    }
+
+    // Фоновая загрузка URI, прошедших допуск, и перечитывание устаревших записей
+    @Scheduled(fixedDelayString = "${stats.cache.load-interval-ms:500}")
+    public void loadPending() {
+        if (pendingLoads.isEmpty() || !loadLock.tryLock()) {
+            return;
+        }
+        try {
+            List<String> uris = new ArrayList<>(pendingLoads);
+            load(uris, System.nanoTime());
+            uris.forEach(pendingLoads::remove);
+        } catch (Exception e) {
+            log.warn("Не удалось загрузить URI в кэш статистики: {}", e.getMessage());
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /*
+     Хит учитывается в текущей записи и в загружаемой: загрузка начала чтение до фиксации хита и не видит его.
+     Загружаемая запись читается первой: она попадает в entries раньше, чем удаляется из loading,
+     поэтому замена записи между двумя чтениями не теряет хит
+     */
+    private void record(List<EndpointHit> savedHits) {
+        for (EndpointHit hit : savedHits) {
+            UriCounters loadingEntry = loading.get(hit.getUri());
+            UriCounters entry = entries.get(hit.getUri());
+            if (loadingEntry != null) {
+                loadingEntry.record(hit.getApp(), hit.getIp(), hit.getTimestamp());
+            }
+            if (entry != null && entry != loadingEntry) {
+                entry.record(hit.getApp(), hit.getIp(), hit.getTimestamp());
+            }
+        }
+    }
+
+    // URI ставится в очередь загрузки после admit-after-requests обращений; однократные запросы не вытесняют популярные
+    private void admit(String uri) {
+        if (candidates.size() >= maxUris) {
+            candidates.clear();
+        }
+        if (candidates.merge(uri, 1, Integer::sum) >= admitAfterRequests) {
+            candidates.remove(uri);
+            requestLoad(uri);
+        }
+    }
+
+    private void requestLoad(String uri) {
+        if (pendingLoads.size() < maxUris) {
+            pendingLoads.add(uri);
+        }
+    }
+
+    private void warm() {
+        try {
+            List<String> uris = statsRepository.findTopUris(LocalDateTime.now().minusHours(warmHours),
+                    Math.min(warmUris, maxUris));
+            load(uris, System.nanoTime());
+            log.info("Кэш статистики прогрет: {} URI", entries.size());
+        } catch (Exception e) {
+            log.warn("Не удалось прогреть кэш статистики: {}", e.getMessage());
+        }
+    }
+
+    private void load(List<String> uris, long nowNanos) {
+        for (int from = 0; from < uris.size(); from += LOAD_CHUNK_SIZE) {
+            List<String> chunk = uris.subList(from, Math.min(from + LOAD_CHUNK_SIZE, uris.size()));
+            Map<String, UriCounters> loaded = new HashMap<>();
+            for (String uri : chunk) {
+                UriCounters entry = new UriCounters(maxIpsPerUri, totalIps, maxIps, nowNanos);
+                loaded.put(uri, entry);
+                loading.put(uri, entry);
+            }
+            try {
+                hitRollupRepository.forEachUriSummary(chunk, (app, uri, count, firstHit, lastHit) ->
+                        loaded.get(uri).load(app, count, firstHit, lastHit));
+                statsRepository.forEachDistinctIp(chunk, (app, uri, ip) -> loaded.get(uri).loadIp(app, ip));
+                loaded.forEach((uri, entry) -> {
+                    UriCounters replaced = entries.put(uri, entry);
+                    if (replaced != null) {
+                        replaced.release();
+                    }
+                });
+            } finally {
+                loaded.forEach((uri, entry) -> {
+                    loading.remove(uri, entry);
+                    // После ошибки загрузки IP-адреса незагруженных записей возвращаются в общий лимит
+                    if (entries.get(uri) != entry) {
+                        entry.release();
+                    }
+                });
+            }
+        }
+        evictIfNeeded();
+    }
+
+    // Вытеснение давно не запрашивавшихся URI при превышении лимита записей или IP-адресов
+    private void evictIfNeeded() {
+        if ((entries.size() <= maxUris && totalIps.get() < maxIps) || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int targetUris = (int) (maxUris * EVICTION_TARGET);
+            long targetIps = (long) (maxIps * EVICTION_TARGET);
+            List<Map.Entry<String, UriCounters>> coldest = entries.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos()))
+                    .toList();
+            int evicted = 0;
+            for (Map.Entry<String, UriCounters> entry : coldest) {
+                if (entries.size() <= targetUris && totalIps.get() <= targetIps) {
+                    break;
+                }
+                if (entries.remove(entry.getKey(), entry.getValue())) {
+                    entry.getValue().release();
+                    evicted++;
+                }
+            }
+            log.debug("Из кэша статистики вытеснено {} URI", evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isStale(UriCounters entry, long nowNanos) {
+        return entry == null
+                || nowNanos - entry.loadedAtNanos() > TimeUnit.MINUTES.toNanos(refreshAfterMinutes);
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -0,0 +1,179 @@
+package ru.practicum.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.StatsKey;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Самые популярные URI за скользящее окно.
+ Время разбито на срезы длительностью slice-seconds, кольцо из slices срезов покрывает максимальное окно.
+ В каждом срезе хиты считаются алгоритмом Space-Saving с ограниченным числом счетчиков, поэтому память
+ и время ответа зависят только от настроек, а не от количества хитов.
+ Ответ за окно — сумма счетчиков последних срезов; окно отсчитывается с точностью до среза,
+ а значения могут быть завышены на ошибку Space-Saving.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrendingTracker {
+    private final HitRollupRepository hitRollupRepository;
+
+    @Value("${stats.trending.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.trending.slice-seconds:60}")
+    private long sliceSeconds;
+
+    @Value("${stats.trending.slices:60}")
+    private int sliceCount;
+
+    // Количество счетчиков в одном срезе
+    @Value("${stats.trending.capacity:1000}")
+    private int capacity;
+
+    private Slice[] slices;
+
+    @PostConstruct
+    public void init() {
+        slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice(capacity);
+        }
+
+        if (enabled) {
+            warm();
+        }
+    }
+
+    // Учет сохраненных хитов после фиксации текущей транзакции
+    public void recordAfterCommit(List<EndpointHit> savedHits) {
+        if (!enabled || savedHits.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    savedHits.forEach(hit -> record(hit.getApp(), hit.getUri(), hit.getTimestamp(), 1));
+                }
+            });
+        } else {
+            savedHits.forEach(hit -> record(hit.getApp(), hit.getUri(), hit.getTimestamp(), 1));
+        }
+    }
+
+    // Первые k URI с заданным префиксом (null — любые) по количеству хитов за окно
+    public List<ViewStatsDto> top(Duration window, int k, String prefix) {
+        if (!enabled) {
+            return List.of();
+        }
+
+        long current = currentIndex();
+        long needed = Math.min(sliceCount, Math.ceilDiv(window.toSeconds(), sliceSeconds));
+        Map<StatsKey, Long> totals = new HashMap<>();
+        for (long index = current - needed + 1; index <= current; index++) {
+            Slice slice = slice(index);
+            slice.lock.lock();
+            try {
+                if (slice.index == index) {
+                    slice.summary.forEach((key, count, error) -> {
+                        if (prefix == null || key.uri().startsWith(prefix)) {
+                            totals.merge(key, count, Long::sum);
+                        }
+                    });
+                }
+            } finally {
+                slice.lock.unlock();
+            }
+        }
+
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<StatsKey, Long>comparingByValue().reversed()
+                        .thenComparing(entry -> entry.getKey().uri()))
+                .limit(k)
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    public Duration getMaxWindow() {
+        return Duration.ofSeconds(sliceSeconds * sliceCount);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void record(String app, String uri, LocalDateTime timestamp, long count) {
+        long current = currentIndex();
+        // Хиты с часов, спешащих относительно сервера статистики, относятся к текущему срезу
+        long index = Math.min(current, Math.floorDiv(timestamp.toEpochSecond(ZoneOffset.UTC), sliceSeconds));
+        if (index <= current - sliceCount) {
+            return;
+        }
+
+        Slice slice = slice(index);
+        slice.lock.lock();
+        try {
+            if (slice.index < index) {
+                slice.summary.clear();
+                slice.index = index;
+            }
+            // Срез мог быть уже занят более новым интервалом
+            if (slice.index == index) {
+                slice.summary.offer(new StatsKey(app, uri), count);
+            }
+        } finally {
+            slice.lock.unlock();
+        }
+    }
+
+    // Восстановление срезов после перезапуска по поминутным агрегатам
+    private void warm() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minus(getMaxWindow());
+            hitRollupRepository.forEachBucket(RollupGranularity.MINUTE, since,
+                    (bucketStart, app, uri, hits) -> record(app, uri, bucketStart, hits));
+            log.info("Срезы популярных URI восстановлены за последние {}", getMaxWindow());
+        } catch (Exception e) {
+            log.warn("Не удалось восстановить срезы популярных URI: {}", e.getMessage());
+        }
+    }
+
+    private long currentIndex() {
+        return Math.floorDiv(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC), sliceSeconds);
+    }
+
+    private Slice slice(long index) {
+        return slices[(int) Math.floorMod(index, (long) sliceCount)];
+    }
+
+    private static final class Slice {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final SpaceSaving<StatsKey> summary;
+        // Номер интервала, который сейчас хранит срез; -1 — пустой
+        private long index = -1;
+
+        private Slice(int capacity) {
+            this.summary = new SpaceSaving<>(capacity);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.practicum.cache;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Счетчики всех хитов одного URI за всю историю: общее количество и множество IP-адресов по приложениям.
+ Ответ по ним верен для любого окна, которое целиком покрывает интервал [firstHit, lastHit].
+ IP-адреса всех записей учитываются в общем счетчике кэша: при исчерпании общего лимита запись перестает
+ отслеживать уникальные посещения так же, как при превышении лимита на один URI.
+ Добавление IP-адреса и сброс множеств выполняются под одной блокировкой, иначе адрес, добавленный
+ во время сброса, остался бы в общем счетчике после освобождения записи.
+ */
+class UriCounters {
+    private static final LocalDateTime EPOCH = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+
+    private final Map<String, AppCounters> apps = new ConcurrentHashMap<>();
+    private final AtomicLong firstHitMicros = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastHitMicros = new AtomicLong(Long.MIN_VALUE);
+    private final int maxIps;
+    private final AtomicLong totalIps;
+    private final long maxTotalIps;
+    // IP-адреса этой записи, учтенные в общем счетчике
+    private final AtomicLong ipCount = new AtomicLong();
+    private final long loadedAtNanos;
+    private final ReentrantLock ipLock = new ReentrantLock();
+    private volatile long lastAccessNanos;
+    // Сбрасывается, если IP-адресов больше лимита: уникальные посещения тогда считаются по базе данных
+    private volatile boolean uniqueTracked = true;
+
+    UriCounters(int maxIps, AtomicLong totalIps, long maxTotalIps, long loadedAtNanos) {
+        this.maxIps = maxIps;
+        this.totalIps = totalIps;
+        this.maxTotalIps = maxTotalIps;
+        this.loadedAtNanos = loadedAtNanos;
+        this.lastAccessNanos = loadedAtNanos;
+    }
+
+    void record(String app, String ip, LocalDateTime timestamp) {
+        AppCounters counters = apps.computeIfAbsent(app, key -> new AppCounters());
+        counters.hits.increment();
+        addIp(counters, ip);
+        long micros = toMicros(timestamp);
+        firstHitMicros.accumulateAndGet(micros, Math::min);
+        lastHitMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    // Заполнение агрегатом из базы данных при загрузке
+    void load(String app, long hits, LocalDateTime firstHit, LocalDateTime lastHit) {
+        apps.computeIfAbsent(app, key -> new AppCounters()).hits.add(hits);
+        firstHitMicros.accumulateAndGet(toMicros(firstHit), Math::min);
+        lastHitMicros.accumulateAndGet(toMicros(lastHit), Math::max);
+    }
+
+    void loadIp(String app, String ip) {
+        addIp(apps.computeIfAbsent(app, key -> new AppCounters()), ip);
+    }
+
+    void disableUnique() {
+        ipLock.lock();
+        try {
+            uniqueTracked = false;
+            apps.values().forEach(counters -> counters.ips.clear());
+            totalIps.addAndGet(-ipCount.getAndSet(0));
+        } finally {
+            ipLock.unlock();
+        }
+    }
+
+    // Освобождение IP-адресов при вытеснении или замене записи
+    void release() {
+        disableUnique();
+    }
+
+    /*
+     Окно [start, end] содержит все известные хиты URI, поэтому счетчики совпадают с подсчетом по базе данных.
+     Хиты, полученные позже, учитываются в счетчиках и сдвигают границы, так что окно либо по-прежнему их
+     содержит, либо перестает покрывать историю URI.
+     */
+    boolean covers(LocalDateTime start, LocalDateTime end) {
+        long first = firstHitMicros.get();
+        if (first == Long.MAX_VALUE) {
+            return true;
+        }
+        return toMicros(start) <= first && toMicros(end) >= lastHitMicros.get();
+    }
+
+    boolean isUniqueTracked() {
+        return uniqueTracked;
+    }
+
+    Map<String, AppCounters> apps() {
+        return apps;
+    }
+
+    long loadedAtNanos() {
+        return loadedAtNanos;
+    }
+
+    long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    void touch(long nowNanos) {
+        lastAccessNanos = nowNanos;
+    }
+
+    private void addIp(AppCounters counters, String ip) {
+        if (!uniqueTracked) {
+            return;
+        }
+        ipLock.lock();
+        try {
+            if (!uniqueTracked) {
+                return;
+            }
+            if (totalIps.get() >= maxTotalIps) {
+                disableUnique();
+                return;
+            }
+            if (counters.ips.add(ip)) {
+                ipCount.incrementAndGet();
+                totalIps.incrementAndGet();
+            }
+            if (counters.ips.size() > maxIps) {
+                disableUnique();
+            }
+        } finally {
+            ipLock.unlock();
+        }
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(EPOCH, time);
+    }
+
+    static class AppCounters {
+        final LongAdder hits = new LongAdder();
+        final Set<String> ips = ConcurrentHashMap.newKeySet();
+    }
+}
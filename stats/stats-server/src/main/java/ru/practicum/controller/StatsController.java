@@ -1,16 +1,29 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.HitBatchResultDto;
 import ru.practicum.ViewStatsDto;
 import ru.practicum.exception.ValidationException;
+import ru.practicum.model.UriFilter;
 import ru.practicum.service.StatsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,29 +31,118 @@ import java.util.List;
 @RestController
 @RequiredArgsConstructor
 public class StatsController {
+    private static final int MAX_BATCH_SIZE = 10_000;
 
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
     public void saveHit(@Valid @RequestBody EndpointHitDto endpointHitDto) {
-        log.info("POST /hit: {}", endpointHitDto);
+        log.debug("POST /hit: {}", endpointHitDto);
         statsService.saveHit(endpointHitDto);
     }
 
+    @PostMapping("/hit/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public HitBatchResultDto saveHits(@RequestBody List<@Valid EndpointHitDto> endpointHitDtos) {
+        log.debug("POST /hit/batch: {} хитов", endpointHitDtos.size());
+
+        if (endpointHitDtos.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Пакет не может содержать более " + MAX_BATCH_SIZE + " запросов");
+        }
+
+        return statsService.saveHits(endpointHitDtos);
+    }
+
     @GetMapping("/stats")
     public List<ViewStatsDto> getStats(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(required = false) List<String> uris,
-            @RequestParam(defaultValue = "false") Boolean unique) {
+            @RequestParam(required = false) String uriPrefix,
+            @RequestParam(required = false) String uriPattern,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "false") Boolean approximate,
+            @RequestParam(required = false) Integer limit) {
+
+        log.info("GET /stats?start={}&end={}&uris={}&uriPrefix={}&uriPattern={}&unique={}&approximate={}&limit={}",
+                start, end, uris, uriPrefix, uriPattern, unique, approximate, limit);
+        validateStatsRequest(start, end, limit);
+
+        return statsService.getStats(start, end, toUriFilter(uris, uriPrefix, uriPattern), unique, approximate,
+                limit);
+    }
+
+    // Статистика в формате NDJSON (одна запись на строку), записываемая в ответ по мере чтения из базы данных
+    @GetMapping("/stats/stream")
+    public void streamStats(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(required = false) String uriPrefix,
+            @RequestParam(required = false) String uriPattern,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "false") Boolean approximate,
+            @RequestParam(required = false) Integer limit,
+            HttpServletResponse response) throws IOException {
 
-        log.info("GET /stats?start={}&end={}&uris={}&unique={}", start, end, uris, unique);
+        log.info("GET /stats/stream?start={}&end={}&uris={}&uriPrefix={}&uriPattern={}&unique={}&approximate={}"
+                + "&limit={}", start, end, uris, uriPrefix, uriPattern, unique, approximate, limit);
+        validateStatsRequest(start, end, limit);
+        UriFilter uriFilter = toUriFilter(uris, uriPrefix, uriPattern);
 
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        // Без сброса после каждой записи: данные уходят клиенту по заполнении буфера ответа
+        ObjectWriter writer = objectMapper.writerFor(ViewStatsDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = writer.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            statsService.streamStats(start, end, uriFilter, unique, approximate, limit, stat -> {
+                try {
+                    writer.writeValue(generator, stat);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    // Самые популярные URI за последнее окно, например /stats/top?window=1h&k=50&prefix=/events/
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTop(@RequestParam(defaultValue = "1h") String window,
+                                     @RequestParam(defaultValue = "10") int k,
+                                     @RequestParam(required = false) String prefix) {
+        log.info("GET /stats/top?window={}&k={}&prefix={}", window, k, prefix);
+        return statsService.getTop(parseWindow(window), k, prefix);
+    }
+
+    private void validateStatsRequest(LocalDateTime start, LocalDateTime end, Integer limit) {
         if (!start.isBefore(end)) {
             throw new ValidationException("Параметр 'start' должен быть раньше 'end'");
         }
+        if (limit != null && limit <= 0) {
+            throw new ValidationException("Параметр 'limit' должен быть положительным");
+        }
+    }
+
+    // Фильтр URI: точный список и (или) префикс либо glob-шаблон
+    private UriFilter toUriFilter(List<String> uris, String uriPrefix, String uriPattern) {
+        if (uriPrefix != null && uriPattern != null) {
+            throw new ValidationException("Параметры 'uriPrefix' и 'uriPattern' не задаются одновременно");
+        }
+        return UriFilter.of(uris, uriPrefix, uriPattern);
+    }
 
-        return statsService.getStats(start, end, uris, unique);
+    // Окно в простом (15m, 1h) или ISO-8601 (PT15M) формате
+    private Duration parseWindow(String window) {
+        try {
+            return DurationStyle.detectAndParse(window);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный параметр 'window': " + window);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+// Ключ суточного скетча: приложение, URI и начало суток
+public record SketchKey(String app, String uri, LocalDateTime bucketStart) {
+}
@@ -0,0 +1,5 @@
+package ru.practicum.model;
+
+// Ключ группировки статистики: приложение и URI
+public record StatsKey(String app, String uri) {
+}
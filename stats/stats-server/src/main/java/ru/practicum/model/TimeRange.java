@@ -0,0 +1,7 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+
+// Полуоткрытый интервал [from, to), при granularity == null покрываемый сырыми хитами
+public record TimeRange(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+}
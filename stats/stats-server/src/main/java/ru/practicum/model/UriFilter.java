@@ -0,0 +1,62 @@
+package ru.practicum.model;
+
+import java.util.List;
+
+/*
+ Фильтр URI запроса статистики: точный список и (или) шаблон LIKE.
+ Шаблон строится из префикса (/events/) или простого glob (/events/*, /events/?): '*' — любая
+ последовательность символов, '?' — один символ, остальные символы сравниваются как есть.
+ Шаблон с постоянным началом использует индекс по uri с классом операторов text_pattern_ops
+ */
+public record UriFilter(List<String> uris, String likePattern) {
+    private static final char ESCAPE = '\\';
+
+    public static UriFilter of(List<String> uris) {
+        return new UriFilter(uris, null);
+    }
+
+    public static UriFilter of(List<String> uris, String uriPrefix, String uriPattern) {
+        if (uriPrefix != null) {
+            return new UriFilter(uris, escape(uriPrefix) + '%');
+        }
+        if (uriPattern != null) {
+            return new UriFilter(uris, globToLike(uriPattern));
+        }
+        return of(uris);
+    }
+
+    public boolean hasUris() {
+        return uris != null && !uris.isEmpty();
+    }
+
+    public boolean hasPattern() {
+        return likePattern != null;
+    }
+
+    private static String globToLike(String glob) {
+        StringBuilder like = new StringBuilder(glob.length() + 1);
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*' -> like.append('%');
+                case '?' -> like.append('_');
+                default -> appendEscaped(like, c);
+            }
+        }
+        return like.toString();
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 1);
+        for (char c : value.toCharArray()) {
+            appendEscaped(escaped, c);
+        }
+        return escaped.toString();
+    }
+
+    private static void appendEscaped(StringBuilder like, char c) {
+        if (c == '%' || c == '_' || c == ESCAPE) {
+            like.append(ESCAPE);
+        }
+        like.append(c);
+    }
+}
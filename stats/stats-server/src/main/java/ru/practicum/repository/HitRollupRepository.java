@@ -0,0 +1,118 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+    private static final String UPSERT_SQL = """
+            INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (granularity, app, uri, bucket_start)
+            DO UPDATE SET hits = endpoint_hit_rollups.hits + EXCLUDED.hits
+            """;
+
+    // Порядок ключей одинаков для всех пакетов, чтобы параллельные вставки не блокировали друг друга по кругу
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator
+            .comparing(BucketKey::granularity)
+            .thenComparing(BucketKey::app)
+            .thenComparing(BucketKey::uri)
+            .thenComparing(BucketKey::bucketStart);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Увеличение счетчиков всех уровней агрегации для пакета хитов
+    public void incrementAll(List<EndpointHit> hits) {
+        Map<BucketKey, Long> increments = new TreeMap<>(KEY_ORDER);
+        for (EndpointHit hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                BucketKey key = new BucketKey(granularity, hit.getApp(), hit.getUri(),
+                        granularity.floor(hit.getTimestamp()));
+                increments.merge(key, 1L, Long::sum);
+            }
+        }
+
+        List<Object[]> args = new ArrayList<>(increments.size());
+        increments.forEach((key, count) -> args.add(new Object[]{
+                key.granularity().name(),
+                Timestamp.valueOf(key.bucketStart()),
+                key.app(),
+                key.uri(),
+                count
+        }));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    // Сумма хитов по полным агрегированным интервалам с группировкой по приложению и URI
+    public List<ViewStatsDto> sumHits(List<TimeRange> ranges, UriFilter uriFilter) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM endpoint_hit_rollups WHERE ");
+        List<Object> args = new ArrayList<>();
+        SqlFilters.appendBucketRanges(sql, args, ranges);
+        SqlFilters.appendUriFilter(sql, args, uriFilter);
+        sql.append(" GROUP BY app, uri");
+
+        return jdbcTemplate.query(sql.toString(), SqlFilters.VIEW_STATS_MAPPER, args.toArray());
+    }
+
+    // Обход агрегатов уровня granularity, начинающихся не раньше since
+    public void forEachBucket(RollupGranularity granularity, LocalDateTime since, BucketVisitor visitor) {
+        jdbcTemplate.query(
+                "SELECT bucket_start, app, uri, hits FROM endpoint_hit_rollups WHERE granularity = ? AND bucket_start >= ?",
+                (RowCallbackHandler) rs -> visitor.visit(rs.getTimestamp("bucket_start").toLocalDateTime(),
+                        rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                granularity.name(), Timestamp.valueOf(since));
+    }
+
+    /*
+     Количество хитов за всю историю по приложению и URI по часовым агрегатам.
+     Время первого и последнего хита известно с точностью до часа, поэтому возвращаются границы,
+     заведомо охватывающие все хиты: начало первого часа и конец последнего, но не позже текущего момента
+     */
+    public void forEachUriSummary(List<String> uris, UriSummaryVisitor visitor) {
+        List<Object> args = new ArrayList<>();
+        args.add(RollupGranularity.HOUR.name());
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits, MIN(bucket_start) AS first_hit, "
+                + "LEAST(MAX(bucket_start) + INTERVAL '1 hour', LOCALTIMESTAMP) AS last_hit "
+                + "FROM endpoint_hit_rollups WHERE granularity = ?");
+        SqlFilters.appendUriFilter(sql, args, uris);
+        sql.append(" GROUP BY app, uri");
+
+        jdbcTemplate.query(sql.toString(),
+                (RowCallbackHandler) rs -> visitor.visit(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"),
+                        rs.getTimestamp("first_hit").toLocalDateTime(), rs.getTimestamp("last_hit").toLocalDateTime()),
+                args.toArray());
+    }
+
+    @FunctionalInterface
+    public interface UriSummaryVisitor {
+        void visit(String app, String uri, long hits, LocalDateTime firstHit, LocalDateTime lastHit);
+    }
+
+    @FunctionalInterface
+    public interface BucketVisitor {
+        void visit(LocalDateTime bucketStart, String app, String uri, long hits);
+    }
+
+    private record BucketKey(RollupGranularity granularity, String app, String uri, LocalDateTime bucketStart) {
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.SketchKey;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@RequiredArgsConstructor
+public class HitSketchRepository {
+    private static final String INSERT_SQL = """
+            INSERT INTO endpoint_hit_sketches (bucket_start, app, uri, sketch)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (app, uri, bucket_start) DO NOTHING
+            """;
+    private static final String UPDATE_SQL = """
+            UPDATE endpoint_hit_sketches SET sketch = ?
+            WHERE app = ? AND uri = ? AND bucket_start = ?
+            """;
+    // Количество ключей в одном запросе блокировки: по три параметра на ключ
+    private static final int LOCK_CHUNK_SIZE = 1_000;
+
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator
+            .comparing(SketchKey::app)
+            .thenComparing(SketchKey::uri)
+            .thenComparing(SketchKey::bucketStart);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /*
+     Объединение скетчей с сохраненными; повторное объединение того же скетча ничего не меняет.
+     Число запросов не зависит от количества ключей: пакетная вставка новых скетчей, блокировка
+     уже существующих строк и пакетное обновление объединенных скетчей.
+     Вызывается в транзакции
+     */
+    public void mergeAll(Map<SketchKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+
+        // Порядок ключей одинаков для всех вызовов, чтобы параллельные объединения не блокировали друг друга по кругу
+        List<SketchKey> keys = new ArrayList<>(sketches.keySet());
+        keys.sort(KEY_ORDER);
+
+        List<Object[]> insertArgs = new ArrayList<>(keys.size());
+        for (SketchKey key : keys) {
+            insertArgs.add(new Object[]{Timestamp.valueOf(key.bucketStart()), key.app(), key.uri(),
+                    sketches.get(key).toBytes()});
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_SQL, insertArgs);
+
+        // Драйвер может не сообщать число вставленных строк (SUCCESS_NO_INFO): такие ключи тоже объединяются,
+        // повторное объединение со своим же скетчем ничего не меняет
+        List<SketchKey> existing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (inserted[i] != 1) {
+                existing.add(keys.get(i));
+            }
+        }
+        if (existing.isEmpty()) {
+            return;
+        }
+
+        Map<SketchKey, HyperLogLog> stored = lockSketches(existing);
+        List<Object[]> updateArgs = new ArrayList<>(existing.size());
+        for (SketchKey key : existing) {
+            HyperLogLog merged = stored.get(key);
+            merged.merge(sketches.get(key));
+            updateArgs.add(new Object[]{merged.toBytes(), key.app(), key.uri(), Timestamp.valueOf(key.bucketStart())});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updateArgs);
+    }
+
+    // Добавление готовых скетчей за сутки, начинающиеся в bucketStart
+    public void mergeAll(LocalDateTime bucketStart, Map<StatsKey, HyperLogLog> sketches) {
+        Map<SketchKey, HyperLogLog> keyed = new HashMap<>();
+        sketches.forEach((key, sketch) -> keyed.put(new SketchKey(key.app(), key.uri(), bucketStart), sketch));
+        mergeAll(keyed);
+    }
+
+    // Объединение суточных скетчей в интервалах с группировкой по приложению и URI
+    public Map<StatsKey, HyperLogLog> findSketches(List<TimeRange> ranges, UriFilter uriFilter,
+                                                   Map<StatsKey, HyperLogLog> sketches) {
+        if (ranges.isEmpty()) {
+            return sketches;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT app, uri, sketch FROM endpoint_hit_sketches WHERE (");
+        List<Object> args = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            TimeRange range = ranges.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(bucket_start >= ? AND bucket_start < ?)");
+            args.add(Timestamp.valueOf(range.from()));
+            args.add(Timestamp.valueOf(range.to()));
+        }
+        sql.append(')');
+        SqlFilters.appendUriFilter(sql, args, uriFilter);
+
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            sketches.merge(new StatsKey(rs.getString("app"), rs.getString("uri")), sketch, (left, right) -> {
+                left.merge(right);
+                return left;
+            });
+        }, args.toArray());
+        return sketches;
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM endpoint_hit_sketches LIMIT 1").isEmpty();
+    }
+
+    // Чтение сохраненных скетчей с блокировкой строк до конца транзакции
+    private Map<SketchKey, HyperLogLog> lockSketches(List<SketchKey> keys) {
+        Map<SketchKey, HyperLogLog> stored = new TreeMap<>(KEY_ORDER);
+        for (int from = 0; from < keys.size(); from += LOCK_CHUNK_SIZE) {
+            List<SketchKey> chunk = keys.subList(from, Math.min(from + LOCK_CHUNK_SIZE, keys.size()));
+            StringBuilder sql = new StringBuilder("SELECT app, uri, bucket_start, sketch FROM endpoint_hit_sketches "
+                    + "WHERE (app, uri, bucket_start) IN (");
+            List<Object> args = new ArrayList<>(chunk.size() * 3);
+            for (int i = 0; i < chunk.size(); i++) {
+                SketchKey key = chunk.get(i);
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                args.add(key.app());
+                args.add(key.uri());
+                args.add(Timestamp.valueOf(key.bucketStart()));
+            }
+            sql.append(") ORDER BY app, uri, bucket_start FOR UPDATE");
+
+            jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> stored.put(
+                    new SketchKey(rs.getString("app"), rs.getString("uri"),
+                            rs.getTimestamp("bucket_start").toLocalDateTime()),
+                    HyperLogLog.fromBytes(rs.getBytes("sketch"))), args.toArray());
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,59 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+// Общие фрагменты динамических SQL-запросов статистики
+final class SqlFilters {
+    static final RowMapper<ViewStatsDto> VIEW_STATS_MAPPER = (rs, rowNum) -> ViewStatsDto.builder()
+            .app(rs.getString("app"))
+            .uri(rs.getString("uri"))
+            .hits(rs.getLong("hits"))
+            .build();
+
+    private SqlFilters() {
+    }
+
+    static void appendUriFilter(StringBuilder sql, List<Object> args, List<String> uris) {
+        appendUriFilter(sql, args, UriFilter.of(uris));
+    }
+
+    static void appendUriFilter(StringBuilder sql, List<Object> args, UriFilter filter) {
+        if (filter == null) {
+            return;
+        }
+        if (filter.hasUris()) {
+            sql.append(" AND uri IN (");
+            for (int i = 0; i < filter.uris().size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+                args.add(filter.uris().get(i));
+            }
+            sql.append(')');
+        }
+        if (filter.hasPattern()) {
+            sql.append(" AND uri LIKE ? ESCAPE '\\'");
+            args.add(filter.likePattern());
+        }
+    }
+
+    // Условие на полные агрегированные интервалы endpoint_hit_rollups
+    static void appendBucketRanges(StringBuilder sql, List<Object> args, List<TimeRange> ranges) {
+        sql.append('(');
+        for (int i = 0; i < ranges.size(); i++) {
+            TimeRange range = ranges.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(granularity = ? AND bucket_start >= ? AND bucket_start < ?)");
+            args.add(range.granularity().name());
+            args.add(Timestamp.valueOf(range.from()));
+            args.add(Timestamp.valueOf(range.to()));
+        }
+        sql.append(')');
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.repository;
+
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface StatsRepositoryCustom {
+    // Сохранение пакета хитов многострочными INSERT без получения сгенерированных идентификаторов
+    int insertAll(List<EndpointHit> hits);
+
+    // Количество сырых хитов в полуоткрытых интервалах с группировкой по приложению и URI
+    List<ViewStatsDto> countHits(List<TimeRange> ranges, UriFilter uriFilter);
+
+    // Обход уникальных сочетаний приложения, URI и IP-адреса сырых хитов в полуоткрытых интервалах
+    void forEachDistinctIp(List<TimeRange> ranges, UriFilter uriFilter, IpVisitor visitor);
+
+    // Потоковый обход статистики по агрегатам (интервалы с уровнем агрегации) и сырым хитам (без уровня)
+    // в порядке убывания количества хитов; limit == null — без ограничения
+    void forEachStats(List<TimeRange> ranges, UriFilter uriFilter, Integer limit, Consumer<ViewStatsDto> visitor);
+
+    // Потоковый обход статистики уникальных IP-адресов за [start, end] в порядке убывания
+    void forEachUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Integer limit,
+                            Consumer<ViewStatsDto> visitor);
+
+    // Начала суток, за которые есть сырые хиты
+    List<LocalDateTime> findHitDays();
+
+    // Обход уникальных сочетаний приложения, URI и IP-адреса за всю историю
+    void forEachDistinctIp(List<String> uris, IpVisitor visitor);
+
+    // URI с наибольшим количеством хитов начиная с указанного момента
+    List<String> findTopUris(LocalDateTime since, int limit);
+
+    @FunctionalInterface
+    interface IpVisitor {
+        void visit(String app, String uri, String ip);
+    }
+}
@@ -0,0 +1,204 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class StatsRepositoryImpl implements StatsRepositoryCustom {
+    // Количество строк в одном INSERT; 4 параметра на строку укладываются в лимит протокола PostgreSQL
+    private static final int ROWS_PER_STATEMENT = 500;
+    // Количество строк, получаемых курсором за одно обращение к PostgreSQL при потоковом чтении
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
+    private static final String INSERT_PREFIX = "INSERT INTO endpoint_hits (app, uri, ip, timestamp) VALUES ";
+    private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int insertAll(List<EndpointHit> hits) {
+        int inserted = 0;
+        for (int from = 0; from < hits.size(); from += ROWS_PER_STATEMENT) {
+            List<EndpointHit> chunk = hits.subList(from, Math.min(from + ROWS_PER_STATEMENT, hits.size()));
+            inserted += jdbcTemplate.update(insertSql(chunk.size()), toArgs(chunk));
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<ViewStatsDto> countHits(List<TimeRange> ranges, UriFilter uriFilter) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT app, uri, COUNT(ip) AS hits FROM endpoint_hits WHERE ");
+        appendRanges(sql, args, ranges);
+        SqlFilters.appendUriFilter(sql, args, uriFilter);
+        sql.append(" GROUP BY app, uri");
+
+        return jdbcTemplate.query(sql.toString(), SqlFilters.VIEW_STATS_MAPPER, args.toArray());
+    }
+
+    @Override
+    public void forEachDistinctIp(List<TimeRange> ranges, UriFilter uriFilter, IpVisitor visitor) {
+        if (ranges.isEmpty()) {
+            return;
+        }
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT app, uri, ip FROM endpoint_hits WHERE ");
+        appendRanges(sql, args, ranges);
+        SqlFilters.appendUriFilter(sql, args, uriFilter);
+
+        jdbcTemplate.query(sql.toString(),
+                (RowCallbackHandler) rs -> visitor.visit(rs.getString("app"), rs.getString("uri"), rs.getString("ip")),
+                args.toArray());
+    }
+
+    @Override
+    public void forEachStats(List<TimeRange> ranges, UriFilter uriFilter, Integer limit,
+                             Consumer<ViewStatsDto> visitor) {
+        List<TimeRange> bucketRanges = ranges.stream()
+                .filter(range -> range.granularity() != null)
+                .toList();
+        List<TimeRange> rawRanges = ranges.stream()
+                .filter(range -> range.granularity() == null)
+                .toList();
+        if (bucketRanges.isEmpty() && rawRanges.isEmpty()) {
+            return;
+        }
+
+        // Суммирование агрегатов и сырых хвостов выполняется в PostgreSQL, приложение получает готовые строки
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT app, uri, SUM(hits) AS hits FROM (");
+        if (!bucketRanges.isEmpty()) {
+            sql.append("SELECT app, uri, hits FROM endpoint_hit_rollups WHERE ");
+            SqlFilters.appendBucketRanges(sql, args, bucketRanges);
+            SqlFilters.appendUriFilter(sql, args, uriFilter);
+        }
+        if (!rawRanges.isEmpty()) {
+            if (!bucketRanges.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT app, uri, COUNT(ip) AS hits FROM endpoint_hits WHERE ");
+            appendRanges(sql, args, rawRanges);
+            SqlFilters.appendUriFilter(sql, args, uriFilter);
+            sql.append(" GROUP BY app, uri");
+        }
+        sql.append(") parts GROUP BY app, uri ORDER BY hits DESC");
+        appendLimit(sql, args, limit);
+
+        queryForward(sql.toString(), args, visitor);
+    }
+
+    @Override
+    public void forEachUniqueStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Integer limit,
+                                   Consumer<ViewStatsDto> visitor) {
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(start));
+        args.add(Timestamp.valueOf(end));
+        StringBuilder sql = new StringBuilder("SELECT app, uri, COUNT(DISTINCT ip) AS hits FROM endpoint_hits "
+                + "WHERE timestamp BETWEEN ? AND ?");
+        SqlFilters.appendUriFilter(sql, args, uriFilter);
+        sql.append(" GROUP BY app, uri ORDER BY hits DESC");
+        appendLimit(sql, args, limit);
+
+        queryForward(sql.toString(), args, visitor);
+    }
+
+    @Override
+    public List<LocalDateTime> findHitDays() {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('day', timestamp) AS day FROM endpoint_hits ORDER BY day",
+                LocalDateTime.class);
+    }
+
+    @Override
+    public void forEachDistinctIp(List<String> uris, IpVisitor visitor) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT app, uri, ip FROM endpoint_hits WHERE TRUE");
+        SqlFilters.appendUriFilter(sql, args, uris);
+
+        jdbcTemplate.query(sql.toString(),
+                (RowCallbackHandler) rs -> visitor.visit(rs.getString("app"), rs.getString("uri"), rs.getString("ip")),
+                args.toArray());
+    }
+
+    @Override
+    public List<String> findTopUris(LocalDateTime since, int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT uri FROM endpoint_hits WHERE timestamp >= ? GROUP BY uri ORDER BY COUNT(ip) DESC LIMIT ?",
+                String.class, Timestamp.valueOf(since), limit);
+    }
+
+    // Чтение однонаправленным курсором порциями по STREAM_FETCH_SIZE строк; PostgreSQL использует курсор
+    // только внутри транзакции, без нее весь результат загружается в память драйвером
+    private void queryForward(String sql, List<Object> args, Consumer<ViewStatsDto> visitor) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            new ArgumentPreparedStatementSetter(args.toArray()).setValues(ps);
+            return ps;
+        }, (RowCallbackHandler) rs -> visitor.accept(SqlFilters.VIEW_STATS_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    private void appendLimit(StringBuilder sql, List<Object> args, Integer limit) {
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+    }
+
+    private void appendRanges(StringBuilder sql, List<Object> args, List<TimeRange> ranges) {
+        sql.append('(');
+        for (int i = 0; i < ranges.size(); i++) {
+            TimeRange range = ranges.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(timestamp >= ? AND timestamp < ?)");
+            args.add(Timestamp.valueOf(range.from()));
+            args.add(Timestamp.valueOf(range.to()));
+        }
+        sql.append(')');
+    }
+
+    private String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDER.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDER);
+        }
+        return sql.toString();
+    }
+
+    private Object[] toArgs(List<EndpointHit> chunk) {
+        Object[] args = new Object[chunk.size() * 4];
+        int i = 0;
+        for (EndpointHit hit : chunk) {
+            args[i++] = hit.getApp();
+            args[i++] = hit.getUri();
+            args[i++] = hit.getIp();
+            args[i++] = Timestamp.valueOf(hit.getTimestamp());
+        }
+        return args;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.RollupGranularity;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ Обслуживание месячных секций таблицы endpoint_hits.
+ Секции создаются на несколько месяцев вперед, чтобы хиты не попадали в секцию по умолчанию,
+ а устаревшие секции удаляются целиком вместо построчного DELETE.
+ Хиты, все же попавшие в секцию по умолчанию (старые хиты из буфера клиента, часы клиента далеко впереди),
+ переносятся в месячные секции, которые для этого создаются; хиты старше срока хранения удаляются.
+ Поэтому секция по умолчанию остается почти пустой и не мешает отсечению секций по времени.
+ Вместе с секциями удаляются агрегаты и скетчи за те же месяцы: иначе сумма хитов из агрегатов
+ и точное число уникальных IP по сырым хитам расходились бы для одного и того же окна.
+ Минутные агрегаты можно хранить короче хитов — тогда запросы старше этого срока
+ читают края интервала из сырых хитов (StatsServiceImpl)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitPartitionManager {
+    private static final String PARENT_TABLE = "endpoint_hits";
+    private static final Pattern PARTITION_NAME = Pattern.compile("endpoint_hits_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    private static final String ROLLUP_TABLE = "endpoint_hit_rollups";
+    private static final String SKETCH_TABLE = "endpoint_hit_sketches";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stats.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    // 0 — хранить хиты бессрочно
+    @Value("${stats.partitions.retention-months:0}")
+    private int retentionMonths;
+
+    // 0 — хранить минутные агрегаты столько же, сколько хиты
+    @Value("${stats.rollups.minute-retention-days:0}")
+    private int minuteRetentionDays;
+
+    @PostConstruct
+    public void init() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${stats.partitions.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        try {
+            if (!isPartitioned()) {
+                log.warn("Таблица {} не секционирована, обслуживание секций пропущено", PARENT_TABLE);
+                return;
+            }
+            YearMonth current = YearMonth.now();
+            YearMonth oldestKept = retentionMonths > 0 ? current.minusMonths(retentionMonths) : null;
+            relocateDefaultRows(oldestKept);
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(current.plusMonths(i));
+            }
+            if (oldestKept != null) {
+                dropPartitionsBefore(oldestKept);
+                deleteAggregatesBefore(oldestKept.atDay(1).atStartOfDay());
+            }
+            if (minuteRetentionDays > 0) {
+                deleteMinuteRollupsBefore(LocalDate.now().minusDays(minuteRetentionDays).atStartOfDay());
+            }
+        } catch (Exception e) {
+            log.error("Ошибка обслуживания секций таблицы {}: {}", PARENT_TABLE, e.getMessage(), e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM pg_partitioned_table pt
+                JOIN pg_class c ON c.oid = pt.partrelid
+                WHERE c.relname = ?
+                """, Integer.class, PARENT_TABLE);
+        return count != null && count > 0;
+    }
+
+    private void createPartition(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month)
+                    + " PARTITION OF " + PARENT_TABLE
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        } catch (Exception e) {
+            // Например, если хиты за этот месяц уже попали в секцию по умолчанию
+            log.error("Не удалось создать секцию {}: {}", partitionName(month), e.getMessage());
+        }
+    }
+
+    // Перенос хитов из секции по умолчанию в месячные секции; oldestKept == null — хранить бессрочно
+    private void relocateDefaultRows(YearMonth oldestKept) {
+        List<LocalDate> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', timestamp)::date FROM " + DEFAULT_PARTITION, LocalDate.class);
+        for (LocalDate start : months) {
+            YearMonth month = YearMonth.from(start);
+            try {
+                if (oldestKept != null && month.isBefore(oldestKept)) {
+                    int deleted = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION
+                            + " WHERE timestamp >= ? AND timestamp < ?", Date.valueOf(start),
+                            Date.valueOf(month.plusMonths(1).atDay(1)));
+                    log.info("Из секции по умолчанию удалено {} хитов за {} старше срока хранения", deleted, month);
+                } else {
+                    transactionTemplate.executeWithoutResult(status -> relocate(month));
+                }
+            } catch (Exception e) {
+                log.error("Не удалось перенести хиты за {} из секции по умолчанию: {}", month, e.getMessage());
+            }
+        }
+    }
+
+    /*
+     Секция с хитами за месяц заполняется отдельно и подключается к таблице после удаления этих хитов
+     из секции по умолчанию: создать секцию напрямую нельзя, пока в секции по умолчанию есть хиты ее диапазона.
+     Вставка в секцию по умолчанию на время переноса блокируется, чтобы подключение не нашло новых хитов
+     */
+    private void relocate(YearMonth month) {
+        String partition = partitionName(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+
+        jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN EXCLUSIVE MODE");
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + PARENT_TABLE
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                + " WHERE timestamp >= ? AND timestamp < ? RETURNING id, app, uri, ip, timestamp) "
+                + "INSERT INTO " + partition + " (id, app, uri, ip, timestamp) SELECT * FROM moved",
+                Date.valueOf(from), Date.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        log.info("Хиты за {} перенесены из секции по умолчанию в секцию {}: {}", month, partition, moved);
+    }
+
+    private void dropPartitionsBefore(YearMonth oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                JOIN pg_class p ON p.oid = i.inhparent
+                WHERE p.relname = ?
+                """, String.class, PARENT_TABLE);
+
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                log.info("Удалена устаревшая секция {}", partition);
+            }
+        }
+    }
+
+    // Агрегаты всех уровней и суточные скетчи за месяцы, секции которых удалены
+    private void deleteAggregatesBefore(LocalDateTime cutoff) {
+        int rollups = jdbcTemplate.update("DELETE FROM " + ROLLUP_TABLE + " WHERE bucket_start < ?",
+                Timestamp.valueOf(cutoff));
+        int sketches = jdbcTemplate.update("DELETE FROM " + SKETCH_TABLE + " WHERE bucket_start < ?",
+                Timestamp.valueOf(cutoff));
+        if (rollups > 0 || sketches > 0) {
+            log.info("Удалены агрегаты старше {}: агрегатов {}, скетчей {}", cutoff, rollups, sketches);
+        }
+    }
+
+    private void deleteMinuteRollupsBefore(LocalDateTime cutoff) {
+        int deleted = jdbcTemplate.update("DELETE FROM " + ROLLUP_TABLE + " WHERE granularity = ? AND bucket_start < ?",
+                RollupGranularity.MINUTE.name(), Timestamp.valueOf(cutoff));
+        if (deleted > 0) {
+            log.info("Удалены минутные агрегаты старше {}: {}", cutoff, deleted);
+        }
+    }
+
+    private String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(NAME_FORMAT);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.SketchKey;
+import ru.practicum.repository.HitSketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Обновление суточных скетчей уникальных IP-адресов вне транзакции сохранения хитов.
+ После фиксации транзакции IP-адреса добавляются в скетчи в памяти, а фоновая задача раз в flush-interval-ms
+ объединяет накопленное с сохраненными скетчами несколькими пакетными запросами.
+ При аварийном завершении теряются изменения только последнего интервала; после ошибки записи скетчи
+ возвращаются в очередь, а повторное объединение не искажает оценку.
+ Скетчи нужны только для приближенного подсчета (approximate = true), поэтому по умолчанию не ведутся:
+ приближенные запросы тогда считаются точно
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitSketchWriter {
+    private final HitSketchRepository hitSketchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Value("${stats.sketches.enabled:false}")
+    private boolean enabled;
+
+    // Скетчи, накопленные с последней записи в базу данных
+    private Map<SketchKey, HyperLogLog> pending = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Учет IP-адресов сохраненных хитов после фиксации текущей транзакции
+    public void recordAfterCommit(List<EndpointHit> savedHits) {
+        if (!enabled || savedHits.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(savedHits);
+                }
+            });
+        } else {
+            record(savedHits);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.sketches.flush-interval-ms:5000}")
+    public void flush() {
+        Map<SketchKey, HyperLogLog> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> hitSketchRepository.mergeAll(batch));
+            log.debug("Записано {} суточных скетчей", batch.size());
+        } catch (Exception e) {
+            log.warn("Не удалось записать {} суточных скетчей, повтор при следующей записи: {}",
+                    batch.size(), e.getMessage());
+            lock.lock();
+            try {
+                batch.forEach((key, sketch) -> pending.merge(key, sketch, HitSketchWriter::merge));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private void record(List<EndpointHit> savedHits) {
+        lock.lock();
+        try {
+            for (EndpointHit hit : savedHits) {
+                SketchKey key = new SketchKey(hit.getApp(), hit.getUri(),
+                        RollupGranularity.DAY.floor(hit.getTimestamp()));
+                pending.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static HyperLogLog merge(HyperLogLog left, HyperLogLog right) {
+        left.merge(right);
+        return left;
+    }
+}
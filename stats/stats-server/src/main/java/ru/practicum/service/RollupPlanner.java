@@ -0,0 +1,53 @@
+package ru.practicum.service;
+
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.TimeRange;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ Разбиение интервала запроса на полные агрегированные интервалы и сырые хвосты.
+ Сначала берутся полные сутки, затем полные часы и минуты по краям, остаток читается из endpoint_hits.
+ */
+public final class RollupPlanner {
+    private RollupPlanner() {
+    }
+
+    // Интервалы для полуоткрытого диапазона [from, to) по всем уровням агрегации
+    public static List<TimeRange> plan(LocalDateTime from, LocalDateTime to) {
+        return plan(from, to, RollupGranularity.values());
+    }
+
+    // Интервалы для полуоткрытого диапазона [from, to) по заданным уровням, от крупного к мелкому
+    public static List<TimeRange> plan(LocalDateTime from, LocalDateTime to, RollupGranularity... levels) {
+        List<TimeRange> ranges = new ArrayList<>();
+        cover(from, to, levels, 0, ranges);
+        return ranges;
+    }
+
+    private static void cover(LocalDateTime from, LocalDateTime to, RollupGranularity[] levels, int level,
+                              List<TimeRange> ranges) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == levels.length) {
+            ranges.add(new TimeRange(null, from, to));
+            return;
+        }
+
+        RollupGranularity granularity = levels[level];
+        LocalDateTime bucketsFrom = granularity.ceil(from);
+        LocalDateTime bucketsTo = granularity.floor(to);
+
+        if (!bucketsFrom.isBefore(bucketsTo)) {
+            cover(from, to, levels, level + 1, ranges);
+            return;
+        }
+
+        cover(from, bucketsFrom, levels, level + 1, ranges);
+        ranges.add(new TimeRange(granularity, bucketsFrom, bucketsTo));
+        cover(bucketsTo, to, levels, level + 1, ranges);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.TimeRange;
+import ru.practicum.repository.HitSketchRepository;
+import ru.practicum.repository.StatsRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Построение суточных скетчей по хитам, сохраненным до появления таблицы скетчей.
+ Объединение скетчей идемпотентно, поэтому заполнение безопасно выполнять параллельно с приемом новых хитов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SketchBackfillRunner implements ApplicationRunner {
+    private final StatsRepository statsRepository;
+    private final HitSketchRepository hitSketchRepository;
+    private final HitSketchWriter hitSketchWriter;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!hitSketchWriter.isEnabled() || !hitSketchRepository.isEmpty()) {
+            return;
+        }
+
+        List<LocalDateTime> days = statsRepository.findHitDays();
+        log.info("Построение скетчей уникальных посещений за {} суток", days.size());
+
+        for (LocalDateTime day : days) {
+            Map<StatsKey, HyperLogLog> sketches = new HashMap<>();
+            statsRepository.forEachDistinctIp(List.of(new TimeRange(null, day, day.plusDays(1))), null,
+                    (app, uri, ip) -> sketches.computeIfAbsent(new StatsKey(app, uri), key -> new HyperLogLog()).add(ip));
+            transactionTemplate.executeWithoutResult(status -> hitSketchRepository.mergeAll(day, sketches));
+        }
+    }
+}
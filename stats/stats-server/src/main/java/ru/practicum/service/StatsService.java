@@ -1,13 +1,27 @@
 package ru.practicum.service;
 
 import ru.practicum.EndpointHitDto;
+import ru.practicum.HitBatchResultDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.model.UriFilter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHitDto endpointHitDto);
 
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique);
-}
\ No newline at end of file
+    HitBatchResultDto saveHits(List<EndpointHitDto> endpointHitDtos);
+
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Boolean unique,
+                                Boolean approximate, Integer limit);
+
+    // Передача статистики по одной записи в порядке убывания хитов без накопления всего результата в памяти
+    void streamStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Boolean unique, Boolean approximate,
+                     Integer limit, Consumer<ViewStatsDto> consumer);
+
+    // Самые популярные URI за последнее окно window по счетчикам в памяти
+    List<ViewStatsDto> getTop(Duration window, int k, String prefix);
+}
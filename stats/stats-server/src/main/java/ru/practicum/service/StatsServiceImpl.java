@@ -2,16 +2,36 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.EndpointHitDto;
+import ru.practicum.HitBatchResultDto;
 import ru.practicum.ViewStatsDto;
+import ru.practicum.cache.CacheLookup;
+import ru.practicum.cache.HotStatsCache;
+import ru.practicum.cache.TrendingTracker;
+import ru.practicum.exception.ValidationException;
 import ru.practicum.mapper.EndpointHitMapper;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.model.RollupGranularity;
+import ru.practicum.model.StatsKey;
+import ru.practicum.model.TimeRange;
+import ru.practicum.model.UriFilter;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.HitSketchRepository;
 import ru.practicum.repository.StatsRepository;
+import ru.practicum.sketch.HyperLogLog;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -19,25 +39,189 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class StatsServiceImpl implements StatsService {
 
+    // Граница 'end' включительная, а интервалы агрегатов полуоткрытые; 1 мкс — точность timestamp в PostgreSQL
+    private static final long INCLUSIVE_END_NANOS = 1_000;
+
     private final StatsRepository statsRepository;
+    private final HitRollupRepository hitRollupRepository;
+    private final HitSketchRepository hitSketchRepository;
+    private final HitSketchWriter hitSketchWriter;
+    private final HotStatsCache hotStatsCache;
+    private final TrendingTracker trendingTracker;
+
+    // Срок хранения минутных агрегатов (HitPartitionManager); 0 — хранятся столько же, сколько хиты
+    @Value("${stats.rollups.minute-retention-days:0}")
+    private int minuteRetentionDays;
 
     @Override
     @Transactional
     public void saveHit(EndpointHitDto endpointHitDto) {
         EndpointHit endpointHit = EndpointHitMapper.toEntity(endpointHitDto);
         statsRepository.save(endpointHit);
-        log.info("Сохранен запрос: app={}, uri={}, ip={}",
+        hitRollupRepository.incrementAll(List.of(endpointHit));
+        hitSketchWriter.recordAfterCommit(List.of(endpointHit));
+        hotStatsCache.recordAfterCommit(List.of(endpointHit));
+        trendingTracker.recordAfterCommit(List.of(endpointHit));
+        log.debug("Сохранен запрос: app={}, uri={}, ip={}",
                 endpointHit.getApp(), endpointHit.getUri(), endpointHit.getIp());
     }
 
     @Override
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        log.info("Получение статистики с {} по {}, uris: {}, unique: {}", start, end, uris, unique);
+    @Transactional
+    public HitBatchResultDto saveHits(List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> hits = endpointHitDtos.stream()
+                .map(EndpointHitMapper::toEntity)
+                .toList();
+        int saved = statsRepository.insertAll(hits);
+        hitRollupRepository.incrementAll(hits);
+        hitSketchWriter.recordAfterCommit(hits);
+        hotStatsCache.recordAfterCommit(hits);
+        trendingTracker.recordAfterCommit(hits);
+        log.info("Сохранен пакет запросов: получено={}, сохранено={}", hits.size(), saved);
+
+        return HitBatchResultDto.builder()
+                .received(endpointHitDtos.size())
+                .saved(saved)
+                .build();
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Boolean unique,
+                                       Boolean approximate, Integer limit) {
+        log.info("Получение статистики с {} по {}, uris: {}, шаблон: {}, unique: {}, approximate: {}, limit: {}",
+                start, end, uriFilter.uris(), uriFilter.likePattern(), unique, approximate, limit);
+
+        // Первые N по всем URI отбираются в PostgreSQL, без загрузки остальных строк
+        if (limit != null && !uriFilter.hasUris()) {
+            List<ViewStatsDto> top = new ArrayList<>(limit);
+            streamStats(start, end, uriFilter, unique, approximate, limit, top::add);
+            return top;
+        }
 
+        // Кэш популярных URI отвечает только по точному списку URI
+        if (uriFilter.hasPattern()) {
+            return sortByHits(getStoredStats(start, end, uriFilter, unique, approximate), limit);
+        }
+
+        CacheLookup cached = hotStatsCache.lookup(start, end, uriFilter.uris(), Boolean.TRUE.equals(unique));
+        if (cached.isComplete()) {
+            return sortByHits(cached.stats(), limit);
+        }
+
+        List<ViewStatsDto> stats = new ArrayList<>(cached.stats());
+        stats.addAll(getStoredStats(start, end, UriFilter.of(cached.missedUris()), unique, approximate));
+        return sortByHits(stats, limit);
+    }
+
+    // Кэш популярных URI не используется: потоковый режим рассчитан на выборки по всем URI
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, Boolean unique,
+                            Boolean approximate, Integer limit, Consumer<ViewStatsDto> consumer) {
         if (Boolean.TRUE.equals(unique)) {
-            return statsRepository.findUniqueStats(start, end, uris);
+            if (useSketches(approximate)) {
+                // Скетчи объединяются в памяти, поэтому приближенная статистика сортируется целиком
+                sortByHits(getApproximateUniqueStats(start, end, uriFilter), limit).forEach(consumer);
+            } else {
+                statsRepository.forEachUniqueStats(start, end, uriFilter, limit, consumer);
+            }
         } else {
-            return statsRepository.findStats(start, end, uris);
+            statsRepository.forEachStats(planRollups(start, end), uriFilter, limit, consumer);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<ViewStatsDto> getTop(Duration window, int k, String prefix) {
+        if (window.isNegative() || window.isZero() || window.compareTo(trendingTracker.getMaxWindow()) > 0) {
+            throw new ValidationException("Параметр 'window' должен быть в пределах "
+                    + trendingTracker.getMaxWindow());
+        }
+        if (k <= 0 || k > trendingTracker.getCapacity()) {
+            throw new ValidationException("Параметр 'k' должен быть от 1 до " + trendingTracker.getCapacity());
+        }
+        return trendingTracker.top(window, k, prefix);
+    }
+
+    // Приближенный подсчет возможен, только если ведутся суточные скетчи; иначе уникальные посещения считаются точно
+    private boolean useSketches(Boolean approximate) {
+        return Boolean.TRUE.equals(approximate) && hitSketchWriter.isEnabled();
+    }
+
+    private List<ViewStatsDto> getStoredStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                              Boolean unique, Boolean approximate) {
+        if (Boolean.TRUE.equals(unique)) {
+            if (useSketches(approximate)) {
+                return getApproximateUniqueStats(start, end, uriFilter);
+            }
+            List<ViewStatsDto> stats = new ArrayList<>();
+            statsRepository.forEachUniqueStats(start, end, uriFilter, null, stats::add);
+            return stats;
+        } else {
+            return getRolledUpStats(start, end, uriFilter);
+        }
+    }
+
+    // Сумма по полным суткам, часам и минутам из агрегатов плюс сырые хиты в неполных минутах по краям
+    private List<ViewStatsDto> getRolledUpStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter) {
+        List<TimeRange> plan = planRollups(start, end);
+        List<TimeRange> bucketRanges = plan.stream()
+                .filter(range -> range.granularity() != null)
+                .toList();
+        List<TimeRange> rawRanges = plan.stream()
+                .filter(range -> range.granularity() == null)
+                .toList();
+
+        Map<StatsKey, ViewStatsDto> stats = new HashMap<>();
+        for (ViewStatsDto stat : hitRollupRepository.sumHits(bucketRanges, uriFilter)) {
+            stats.merge(new StatsKey(stat.getApp(), stat.getUri()), stat, this::sumHits);
+        }
+        for (ViewStatsDto stat : statsRepository.countHits(rawRanges, uriFilter)) {
+            stats.merge(new StatsKey(stat.getApp(), stat.getUri()), stat, this::sumHits);
+        }
+
+        return List.copyOf(stats.values());
+    }
+
+    /*
+     Интервалы агрегатов для запроса. Минутные агрегаты старше срока хранения удалены, поэтому для запросов,
+     начинающихся раньше этого срока, края интервала до полного часа читаются из сырых хитов
+     */
+    private List<TimeRange> planRollups(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime to = end.plusNanos(INCLUSIVE_END_NANOS);
+        if (minuteRetentionDays > 0
+                && start.isBefore(LocalDate.now().minusDays(minuteRetentionDays).atStartOfDay())) {
+            return RollupPlanner.plan(start, to, RollupGranularity.DAY, RollupGranularity.HOUR);
+        }
+        return RollupPlanner.plan(start, to);
+    }
+
+    // Оценка уникальных IP объединением суточных скетчей и адресов из сырых хитов в неполных сутках по краям
+    private List<ViewStatsDto> getApproximateUniqueStats(LocalDateTime start, LocalDateTime end,
+                                                         UriFilter uriFilter) {
+        List<TimeRange> plan = RollupPlanner.plan(start, end.plusNanos(INCLUSIVE_END_NANOS), RollupGranularity.DAY);
+        List<TimeRange> dayRanges = plan.stream()
+                .filter(range -> range.granularity() != null)
+                .toList();
+        List<TimeRange> rawRanges = plan.stream()
+                .filter(range -> range.granularity() == null)
+                .toList();
+
+        Map<StatsKey, HyperLogLog> sketches = hitSketchRepository.findSketches(dayRanges, uriFilter, new HashMap<>());
+        statsRepository.forEachDistinctIp(rawRanges, uriFilter, (app, uri, ip) ->
+                sketches.computeIfAbsent(new StatsKey(app, uri), key -> new HyperLogLog()).add(ip));
+
+        return sketches.entrySet().stream()
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue().estimate()))
+                .toList();
+    }
+
+    private List<ViewStatsDto> sortByHits(List<ViewStatsDto> stats, Integer limit) {
+        return stats.stream()
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .toList();
+    }
+
+    private ViewStatsDto sumHits(ViewStatsDto left, ViewStatsDto right) {
+        return new ViewStatsDto(left.getApp(), left.getUri(), left.getHits() + right.getHits());
+    }
+}
@@ -0,0 +1,198 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ Скетч HyperLogLog для приближенного подсчета уникальных значений.
+ Точность p = 14 (16384 регистра): стандартная ошибка оценки 1.04 / sqrt(16384) ≈ 0.81%,
+ на практике отклонение от точного значения не превышает 2.5%. При малом числе значений
+ используется линейный подсчет, который дает почти точный результат.
+ Пока заполнено немного регистров, скетч хранится в разреженном виде — отсортированном массиве
+ пар (регистр, значение), и переходит к плотному массиву регистров при заполнении 1/8 регистров.
+ Скетчи с одинаковой точностью объединяются без потери точности.
+ */
+public class HyperLogLog {
+    public static final int PRECISION = 14;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int SPARSE_LIMIT = REGISTERS / 8;
+    // До 3 * m значений линейный подсчет по пустым регистрам точнее смещенной оценки HyperLogLog
+    private static final double LINEAR_COUNTING_LIMIT = 3;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte MODE_SPARSE = 0;
+    private static final byte MODE_DENSE = 1;
+
+    // Разреженное представление: (индекс регистра << 8) | значение, по возрастанию индекса
+    private int[] sparse = new int[8];
+    private int sparseSize;
+    // Плотное представление, null пока скетч разреженный
+    private byte[] dense;
+
+    public void add(String value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        update(index, rank);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.dense != null) {
+            for (int i = 0; i < REGISTERS; i++) {
+                if (other.dense[i] != 0) {
+                    update(i, other.dense[i]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    public long estimate() {
+        int zeros = REGISTERS;
+        double sum = 0;
+        if (dense != null) {
+            zeros = 0;
+            for (byte register : dense) {
+                if (register == 0) {
+                    zeros++;
+                }
+                sum += 1.0 / (1L << register);
+            }
+        } else {
+            zeros -= sparseSize;
+            sum += zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        }
+
+        if (zeros > 0) {
+            double linear = REGISTERS * Math.log((double) REGISTERS / zeros);
+            if (linear <= LINEAR_COUNTING_LIMIT * REGISTERS) {
+                return Math.round(linear);
+            }
+        }
+        return Math.round(ALPHA * REGISTERS * REGISTERS / sum);
+    }
+
+    public byte[] toBytes() {
+        if (dense != null) {
+            return ByteBuffer.allocate(3 + REGISTERS)
+                    .put(FORMAT_VERSION)
+                    .put((byte) PRECISION)
+                    .put(MODE_DENSE)
+                    .put(dense)
+                    .array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(3 + Integer.BYTES + sparseSize * Integer.BYTES)
+                .put(FORMAT_VERSION)
+                .put((byte) PRECISION)
+                .put(MODE_SPARSE)
+                .putInt(sparseSize);
+        for (int i = 0; i < sparseSize; i++) {
+            buffer.putInt(sparse[i]);
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        byte precision = buffer.get();
+        if (version != FORMAT_VERSION || precision != PRECISION) {
+            throw new IllegalArgumentException("Неподдерживаемый формат скетча: версия " + version
+                    + ", точность " + precision);
+        }
+
+        HyperLogLog sketch = new HyperLogLog();
+        if (buffer.get() == MODE_DENSE) {
+            sketch.dense = new byte[REGISTERS];
+            buffer.get(sketch.dense);
+        } else {
+            sketch.sparseSize = buffer.getInt();
+            sketch.sparse = new int[Math.max(8, sketch.sparseSize)];
+            for (int i = 0; i < sketch.sparseSize; i++) {
+                sketch.sparse[i] = buffer.getInt();
+            }
+        }
+        return sketch;
+    }
+
+    private void update(int index, int rank) {
+        if (dense != null) {
+            if (dense[index] < rank) {
+                dense[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = findSparse(index);
+        if (position >= 0) {
+            if ((sparse[position] & 0xFF) < rank) {
+                sparse[position] = (index << 8) | rank;
+            }
+            return;
+        }
+
+        if (sparseSize == SPARSE_LIMIT) {
+            toDense();
+            update(index, rank);
+            return;
+        }
+        int insertAt = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, SPARSE_LIMIT));
+        }
+        System.arraycopy(sparse, insertAt, sparse, insertAt + 1, sparseSize - insertAt);
+        sparse[insertAt] = (index << 8) | rank;
+        sparseSize++;
+    }
+
+    // Бинарный поиск регистра в разреженном массиве в формате Arrays.binarySearch
+    private int findSparse(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midIndex = sparse[mid] >>> 8;
+            if (midIndex < index) {
+                low = mid + 1;
+            } else if (midIndex > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        dense = new byte[REGISTERS];
+        for (int i = 0; i < sparseSize; i++) {
+            dense[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    // 64-битный FNV-1a с финальным перемешиванием из MurmurHash3 для равномерного распределения битов
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
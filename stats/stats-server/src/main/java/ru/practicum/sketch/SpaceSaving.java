@@ -0,0 +1,82 @@
+package ru.practicum.sketch;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/*
+ Алгоритм Space-Saving для поиска самых частых ключей в потоке при фиксированной памяти.
+ Хранится не более capacity счетчиков; новый ключ при заполнении вытесняет ключ с наименьшим счетчиком
+ и наследует его значение, которое запоминается как максимальная ошибка.
+ Счетчик никогда не меньше истинной частоты ключа и превышает ее не больше чем на ошибку (не больше N / capacity),
+ поэтому все ключи с частотой выше N / capacity гарантированно остаются в наборе.
+ Класс не потокобезопасен.
+ */
+public class SpaceSaving<K> {
+    private static final Comparator<Counter<?>> BY_COUNT = Comparator
+            .comparingLong((Counter<?> counter) -> counter.count)
+            .thenComparingLong(counter -> counter.id);
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    // Счетчики по возрастанию значения: первый вытесняется при заполнении
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(BY_COUNT);
+    private long nextId;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void offer(K key, long count) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += count;
+            byCount.add(counter);
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            counter = new Counter<>(key, count, 0, nextId++);
+        } else {
+            Counter<K> min = byCount.pollFirst();
+            counters.remove(min.key);
+            counter = new Counter<>(key, min.count + count, min.count, nextId++);
+        }
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    public void forEach(CounterVisitor<K> visitor) {
+        counters.values().forEach(counter -> visitor.visit(counter.key, counter.count, counter.error));
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public void clear() {
+        counters.clear();
+        byCount.clear();
+    }
+
+    @FunctionalInterface
+    public interface CounterVisitor<K> {
+        void visit(K key, long count, long error);
+    }
+
+    private static final class Counter<K> {
+        private final K key;
+        private final long error;
+        private final long id;
+        private long count;
+
+        private Counter(K key, long count, long error, long id) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.id = id;
+        }
+    }
+}
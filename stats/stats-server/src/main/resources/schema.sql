@@ -1,8 +1,110 @@
+-- Переход с несекционированной таблицы endpoint_hits предыдущих версий: таблица переименовывается вместе
+-- с ее ограничением и последовательностью, а хиты переносятся в секционированную таблицу ниже.
+-- Тела блоков DO заключены в обычные кавычки: разбор скрипта при инициализации не поддерживает $$
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class
+               WHERE oid = to_regclass(''endpoint_hits'') AND relkind = ''r'') THEN
+        ALTER TABLE endpoint_hits RENAME TO endpoint_hits_legacy;
+        ALTER TABLE endpoint_hits_legacy RENAME CONSTRAINT pk_endpoint_hits TO pk_endpoint_hits_legacy;
+        IF to_regclass(''endpoint_hits_id_seq'') IS NOT NULL THEN
+            ALTER SEQUENCE endpoint_hits_id_seq RENAME TO endpoint_hits_legacy_id_seq;
+        END IF;
+    END IF;
+END';
+
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_id_seq;
+
+-- Хиты секционированы по месяцам, секции создаются заранее HitPartitionManager
 CREATE TABLE IF NOT EXISTS endpoint_hits (
-    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    id         BIGINT NOT NULL DEFAULT nextval('endpoint_hits_id_seq'),
     app        VARCHAR(255) NOT NULL,
     uri        VARCHAR(512) NOT NULL,
     ip         VARCHAR(45) NOT NULL,
     timestamp  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
-    CONSTRAINT pk_endpoint_hits PRIMARY KEY (id)
-);
\ No newline at end of file
+    CONSTRAINT pk_endpoint_hits PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Хиты вне созданных месячных секций
+CREATE TABLE IF NOT EXISTS endpoint_hits_default PARTITION OF endpoint_hits DEFAULT;
+
+-- Перенос хитов из несекционированной таблицы: месячные секции создаются по всему диапазону сохраненных хитов,
+-- а индексы ниже строятся уже по заполненным секциям
+DO '
+DECLARE
+    month DATE;
+BEGIN
+    IF to_regclass(''endpoint_hits_legacy'') IS NULL THEN
+        RETURN;
+    END IF;
+
+    FOR month IN SELECT DISTINCT date_trunc(''month'', timestamp)::date FROM endpoint_hits_legacy LOOP
+        EXECUTE format(''CREATE TABLE IF NOT EXISTS %I PARTITION OF endpoint_hits FOR VALUES FROM (%L) TO (%L)'',
+                       ''endpoint_hits_p'' || to_char(month, ''YYYY_MM''), month, (month + interval ''1 month'')::date);
+    END LOOP;
+
+    INSERT INTO endpoint_hits (id, app, uri, ip, timestamp)
+    SELECT id, app, uri, ip, timestamp FROM endpoint_hits_legacy;
+    PERFORM setval(''endpoint_hits_id_seq'', COALESCE((SELECT MAX(id) FROM endpoint_hits_legacy), 0) + 1, false);
+
+    DROP TABLE endpoint_hits_legacy;
+    RAISE NOTICE ''Хиты перенесены в секционированную таблицу endpoint_hits'';
+END';
+
+-- Покрывающий индекс для /stats: фильтр по uri (точный или по префиксу LIKE) и диапазону времени
+-- без обращения к строкам таблицы. Класс text_pattern_ops позволяет искать по префиксу при любой сортировке БД
+DROP INDEX IF EXISTS ix_endpoint_hits_uri_timestamp;
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hits_uri_pattern_timestamp
+    ON endpoint_hits (uri text_pattern_ops, timestamp) INCLUDE (ip, app);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hits_timestamp
+    ON endpoint_hits (timestamp);
+
+-- Агрегаты хитов по приложению и URI за минуту, час и сутки, обновляемые при сохранении хитов
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollups (
+    granularity   VARCHAR(8) NOT NULL,
+    bucket_start  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app           VARCHAR(255) NOT NULL,
+    uri           VARCHAR(512) NOT NULL,
+    hits          BIGINT NOT NULL,
+    CONSTRAINT pk_endpoint_hit_rollups PRIMARY KEY (granularity, app, uri, bucket_start)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hit_rollups_bucket
+    ON endpoint_hit_rollups (granularity, bucket_start);
+
+-- Агрегаты по префиксу URI (/stats?uriPrefix=/events/)
+CREATE INDEX IF NOT EXISTS ix_endpoint_hit_rollups_uri_pattern
+    ON endpoint_hit_rollups (granularity, uri text_pattern_ops, bucket_start) INCLUDE (app, hits);
+
+-- Первичное заполнение агрегатов для хитов, сохраненных до их появления
+INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+SELECT 'DAY', date_trunc('day', timestamp), app, uri, COUNT(*)
+FROM endpoint_hits
+WHERE NOT EXISTS (SELECT 1 FROM endpoint_hit_rollups WHERE granularity = 'DAY')
+GROUP BY date_trunc('day', timestamp), app, uri;
+
+INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+SELECT 'HOUR', date_trunc('hour', timestamp), app, uri, COUNT(*)
+FROM endpoint_hits
+WHERE NOT EXISTS (SELECT 1 FROM endpoint_hit_rollups WHERE granularity = 'HOUR')
+GROUP BY date_trunc('hour', timestamp), app, uri;
+
+INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app, uri, hits)
+SELECT 'MINUTE', date_trunc('minute', timestamp), app, uri, COUNT(*)
+FROM endpoint_hits
+WHERE NOT EXISTS (SELECT 1 FROM endpoint_hit_rollups WHERE granularity = 'MINUTE')
+GROUP BY date_trunc('minute', timestamp), app, uri;
+
+-- Суточные скетчи HyperLogLog IP-адресов по приложению и URI для приближенного подсчета уникальных посещений
+CREATE TABLE IF NOT EXISTS endpoint_hit_sketches (
+    bucket_start  TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app           VARCHAR(255) NOT NULL,
+    uri           VARCHAR(512) NOT NULL,
+    sketch        BYTEA NOT NULL,
+    CONSTRAINT pk_endpoint_hit_sketches PRIMARY KEY (app, uri, bucket_start)
+);
+
+CREATE INDEX IF NOT EXISTS ix_endpoint_hit_sketches_bucket
+    ON endpoint_hit_sketches (bucket_start);
@@ -0,0 +1,46 @@
+package ru.practicum;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/*
+ База данных интеграционных тестов сервиса статистики: PostgreSQL 16 в Testcontainers, один контейнер на все тесты.
+ Схема использует секционирование и функции PostgreSQL, поэтому H2 не подходит.
+ Без Docker тесты пропускаются; вместо контейнера можно указать существующую пустую базу:
+   mvn test -Dstats.test.datasource.url=jdbc:postgresql://localhost:5432/stats_test
+        -Dstats.test.datasource.username=stats -Dstats.test.datasource.password=stats
+ */
+public abstract class PostgresTestSupport {
+    private static final String EXTERNAL_URL = System.getProperty("stats.test.datasource.url");
+
+    private static PostgreSQLContainer<?> postgres;
+
+    // Условие @EnabledIf для тестов с базой данных
+    public static boolean isDatabaseAvailable() {
+        return EXTERNAL_URL != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_URL != null) {
+            registry.add("spring.datasource.url", () -> EXTERNAL_URL);
+            registry.add("spring.datasource.username", () -> System.getProperty("stats.test.datasource.username"));
+            registry.add("spring.datasource.password", () -> System.getProperty("stats.test.datasource.password"));
+            return;
+        }
+        PostgreSQLContainer<?> container = container();
+        registry.add("spring.datasource.url", container::getJdbcUrl);
+        registry.add("spring.datasource.username", container::getUsername);
+        registry.add("spring.datasource.password", container::getPassword);
+    }
+
+    private static synchronized PostgreSQLContainer<?> container() {
+        if (postgres == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16.1");
+            postgres.start();
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.practicum.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitRollupRepository;
+import ru.practicum.repository.StatsRepository;
+import ru.practicum.repository.StatsRepositoryCustom;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+// Хиты, зафиксированные во время загрузки URI, и согласованность общего счетчика IP-адресов при сбросе записи
+class HotStatsCacheTest {
+    private static final String APP = "ewm-main-service";
+    private static final String URI = "/events/1";
+    private static final LocalDateTime FIRST_HIT = LocalDateTime.of(2024, 3, 4, 10, 0);
+    private static final LocalDateTime START = FIRST_HIT.minusYears(1);
+    private static final LocalDateTime END = FIRST_HIT.plusYears(1);
+
+    private final StatsRepository statsRepository = mock(StatsRepository.class);
+    private final HitRollupRepository hitRollupRepository = mock(HitRollupRepository.class);
+
+    private HotStatsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new HotStatsCache(statsRepository, hitRollupRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxUris", 100);
+        ReflectionTestUtils.setField(cache, "maxIpsPerUri", 1_000);
+        ReflectionTestUtils.setField(cache, "maxIps", 10_000L);
+        ReflectionTestUtils.setField(cache, "admitAfterRequests", 1);
+        ReflectionTestUtils.setField(cache, "refreshAfterMinutes", 10L);
+        cache.init();
+    }
+
+    @Test
+    void hitCommittedWhileUriIsLoadingIsCounted() {
+        // Хит фиксируется после того, как загрузка прочитала агрегаты, и в них не попадает
+        doAnswer(invocation -> {
+            HitRollupRepository.UriSummaryVisitor visitor = invocation.getArgument(1);
+            visitor.visit(APP, URI, 2, FIRST_HIT, FIRST_HIT.plusHours(1));
+            cache.recordAfterCommit(List.of(hit("10.0.0.3", FIRST_HIT.plusHours(2))));
+            return null;
+        }).when(hitRollupRepository).forEachUriSummary(anyList(), any());
+        doAnswer(invocation -> {
+            StatsRepositoryCustom.IpVisitor visitor = invocation.getArgument(1);
+            visitor.visit(APP, URI, "10.0.0.1");
+            visitor.visit(APP, URI, "10.0.0.2");
+            return null;
+        }).when(statsRepository).forEachDistinctIp(anyList(), any(StatsRepositoryCustom.IpVisitor.class));
+
+        assertThat(cache.lookup(START, END, List.of(URI), false).isComplete()).isFalse();
+        cache.loadPending();
+
+        assertThat(cachedHits(false)).isEqualTo(3);
+        assertThat(cachedHits(true)).isEqualTo(3);
+    }
+
+    @Test
+    void hitCommittedAfterLoadIsCounted() {
+        doAnswer(invocation -> {
+            HitRollupRepository.UriSummaryVisitor visitor = invocation.getArgument(1);
+            visitor.visit(APP, URI, 1, FIRST_HIT, FIRST_HIT);
+            return null;
+        }).when(hitRollupRepository).forEachUriSummary(anyList(), any());
+
+        cache.lookup(START, END, List.of(URI), false);
+        cache.loadPending();
+        cache.recordAfterCommit(List.of(hit("10.0.0.2", FIRST_HIT.plusHours(1))));
+
+        assertThat(cachedHits(false)).isEqualTo(2);
+    }
+
+    @Test
+    void failedLoadReturnsIpsToSharedLimit() {
+        doAnswer(invocation -> {
+            StatsRepositoryCustom.IpVisitor visitor = invocation.getArgument(1);
+            visitor.visit(APP, URI, "10.0.0.1");
+            throw new IllegalStateException("connection reset");
+        }).when(statsRepository).forEachDistinctIp(anyList(), any(StatsRepositoryCustom.IpVisitor.class));
+
+        cache.lookup(START, END, List.of(URI), false);
+        cache.loadPending();
+
+        assertThat(totalIps().get()).isZero();
+        assertThat(cache.lookup(START, END, List.of(URI), false).isComplete()).isFalse();
+    }
+
+    @Test
+    void releaseDuringConcurrentRecordsLeavesNoIpsInSharedCounter() throws Exception {
+        AtomicLong totalIps = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                UriCounters counters = new UriCounters(1_000_000, totalIps, Long.MAX_VALUE, 0);
+                CountDownLatch startLatch = new CountDownLatch(1);
+                List<Future<?>> writers = List.of(
+                        executor.submit(() -> recordIps(counters, startLatch, 0)),
+                        executor.submit(() -> recordIps(counters, startLatch, 1)),
+                        executor.submit(() -> recordIps(counters, startLatch, 2)));
+                startLatch.countDown();
+                counters.release();
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+
+                assertThat(totalIps.get()).as("round %d", round).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void recordIps(UriCounters counters, CountDownLatch startLatch, int writer) {
+        try {
+            startLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (int i = 0; i < 500; i++) {
+            counters.record(APP, "10." + writer + "." + (i >> 8) + "." + (i & 0xFF), FIRST_HIT);
+        }
+    }
+
+    private long cachedHits(boolean unique) {
+        CacheLookup lookup = cache.lookup(START, END, List.of(URI), unique);
+        assertThat(lookup.isComplete()).isTrue();
+        return lookup.stats().stream().mapToLong(ViewStatsDto::getHits).sum();
+    }
+
+    private AtomicLong totalIps() {
+        return (AtomicLong) ReflectionTestUtils.getField(cache, "totalIps");
+    }
+
+    private static EndpointHit hit(String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app(APP)
+                .uri(URI)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.PostgresTestSupport;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.UriFilter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+// Уникальные посещения по суточным скетчам (approximate = true) совпадают с COUNT(DISTINCT ip) с точностью HLL
+@SpringBootTest(properties = {"stats.sketches.enabled=true", "stats.cache.enabled=false"})
+@EnabledIf("ru.practicum.PostgresTestSupport#isDatabaseAvailable")
+class ApproximateUniqueStatsTest extends PostgresTestSupport {
+    // Допустимое отклонение оценки от точного значения, заявленное в описании скетча
+    private static final double MAX_RELATIVE_ERROR_PERCENT = 2.5;
+    private static final LocalDateTime FIRST_DAY = LocalDateTime.of(2024, 3, 4, 0, 0);
+    private static final int DAYS = 4;
+    private static final int BATCH_SIZE = 1_000;
+    private static final List<String> URIS = List.of("/events/1", "/events/2", "/events/3");
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private HitSketchWriter hitSketchWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String app;
+
+    @BeforeEach
+    void setUp() {
+        app = "approximate-" + UUID.randomUUID();
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            LocalDateTime dayStart = FIRST_DAY.plusDays(day);
+            // Соседние сутки пересекаются наполовину: простая сумма суточных значений дала бы завышенный результат
+            for (int i = 0; i < 4_000; i++) {
+                hits.add(hit("/events/1", ip(day * 2_000 + i), dayStart.plusMinutes(i % 1_440)));
+            }
+            for (int i = 0; i < 300; i++) {
+                hits.add(hit("/events/2", ip(i), dayStart.plusMinutes(day * 300L + i)));
+            }
+            for (int hour = 0; hour < 24; hour++) {
+                hits.add(hit("/events/3", ip(0), dayStart.plusHours(hour)));
+            }
+        }
+        for (int from = 0; from < hits.size(); from += BATCH_SIZE) {
+            statsService.saveHits(hits.subList(from, Math.min(from + BATCH_SIZE, hits.size())));
+        }
+        hitSketchWriter.flush();
+    }
+
+    @Test
+    void sketchesAreWrittenPerDay() {
+        Integer sketches = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM endpoint_hit_sketches WHERE app = ?", Integer.class, app);
+
+        assertThat(sketches).isEqualTo(DAYS * URIS.size());
+    }
+
+    @Test
+    void approximateMatchesExactOverWholeDays() {
+        assertApproximateMatchesExact(FIRST_DAY, FIRST_DAY.plusDays(DAYS).minusSeconds(1));
+    }
+
+    @Test
+    void approximateMatchesExactWithPartialDaysAtEdges() {
+        assertApproximateMatchesExact(FIRST_DAY.plusHours(10).plusMinutes(30),
+                FIRST_DAY.plusDays(DAYS - 1).plusHours(7).plusMinutes(15));
+    }
+
+    private void assertApproximateMatchesExact(LocalDateTime start, LocalDateTime end) {
+        Map<String, Long> exact = uniqueHits(start, end, false);
+        Map<String, Long> approximate = uniqueHits(start, end, true);
+
+        assertThat(exact).containsOnlyKeys(URIS);
+        assertThat(exact.get("/events/2")).isEqualTo(300L);
+        assertThat(exact.get("/events/3")).isEqualTo(1L);
+        assertThat(approximate).containsOnlyKeys(URIS);
+        for (String uri : URIS) {
+            assertThat(approximate.get(uri))
+                    .as(uri)
+                    .isCloseTo(exact.get(uri), withinPercentage(MAX_RELATIVE_ERROR_PERCENT));
+        }
+    }
+
+    private Map<String, Long> uniqueHits(LocalDateTime start, LocalDateTime end, boolean approximate) {
+        return statsService.getStats(start, end, UriFilter.of(URIS), true, approximate, null).stream()
+                .filter(stat -> app.equals(stat.getApp()))
+                .collect(Collectors.toMap(ViewStatsDto::getUri, ViewStatsDto::getHits));
+    }
+
+    private EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static String ip(int index) {
+        return "10." + (index >> 16 & 0xFF) + "." + (index >> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+}
@@ -0,0 +1,103 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    // Допустимое отклонение оценки от точного значения, заявленное в описании скетча
+    private static final double MAX_RELATIVE_ERROR = 0.025;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 1_000, 2_048, 5_000, 10_000, 50_000, 100_000, 1_000_000})
+    void estimateIsCloseToExactCount(int cardinality) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+        }
+
+        assertWithinError(sketch.estimate(), cardinality);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void smallCardinalitiesAreCountedAlmostExactly(int cardinality) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+        }
+
+        // Линейный подсчет ошибается только при совпадении регистров у разных значений
+        assertThat(sketch.estimate()).isCloseTo(cardinality, within(1L));
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertThat(new HyperLogLog().estimate()).isZero();
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int repeat = 0; repeat < 5; repeat++) {
+            for (int i = 0; i < 10_000; i++) {
+                sketch.add(ip(i));
+            }
+        }
+
+        assertWithinError(sketch.estimate(), 10_000);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1_000, 100_000})
+    void mergeEstimatesUnionOfOverlappingSets(int cardinality) {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        // Половина значений общая: объединение содержит 1.5 * cardinality значений
+        for (int i = 0; i < cardinality; i++) {
+            left.add(ip(i));
+            right.add(ip(i + cardinality / 2));
+        }
+
+        left.merge(right);
+
+        assertWithinError(left.estimate(), cardinality + cardinality / 2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 100, 100_000})
+    void serializationKeepsEstimate(int cardinality) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < cardinality; i++) {
+            sketch.add(ip(i));
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(sketch.toBytes());
+    }
+
+    @Test
+    void unsupportedFormatIsRejected() {
+        byte[] bytes = new HyperLogLog().toBytes();
+        bytes[1] = (byte) (HyperLogLog.PRECISION - 1);
+
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(bytes))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertWithinError(long estimate, long exact) {
+        assertThat((double) Math.abs(estimate - exact) / exact)
+                .as("оценка %d при точном значении %d", estimate, exact)
+                .isLessThanOrEqualTo(MAX_RELATIVE_ERROR);
+    }
+
+    private static String ip(int i) {
+        return (10 + (i >>> 24)) + "." + ((i >>> 16) & 0xFF) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF);
+    }
+}